@@ -0,0 +1,55 @@
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Сервис почты без сети для нагрузочного бенчмарка шлюза (bench.GatewayBenchmark):
+ * ящик создается мгновенно, и в нем сразу лежит письмо с кодом и ссылкой подтверждения.
+ * Лежит в пакете по умолчанию, чтобы реализовать MailProvider приложения.
+ */
+public class StubProvider implements MailProvider {
+    private static final String BODY = "<p>Здравствуйте!</p><p>Ваш код подтверждения: <b>4821</b></p>"
+            + "<p><a href=\"https://service.example.com/verify?user=1&amp;token=abc\">Подтвердить</a></p>"
+            + "<p><a href=\"https://service.example.com/help\">Помощь</a></p>";
+
+    @Override
+    public String getName() {
+        return "stub";
+    }
+
+    @Override
+    public EmailAccount createAccount() {
+        String address = UUID.randomUUID() + "@stub.example.com";
+        return new EmailAccount(address, "password", new MailSession(getName(), address, "token", address));
+    }
+
+    @Override
+    public List<EmailMessage> listMessages(MailSession session) {
+        return Collections.singletonList(new EmailMessage("m-" + session.getAddress(),
+                "noreply@service.example.com", "Подтвердите регистрацию", null, new Date()));
+    }
+
+    @Override
+    public String fetchBody(MailSession session, String messageId) {
+        return BODY;
+    }
+
+    @Override
+    public Request buildBodyRequest(MailSession session, String messageId) {
+        throw new UnsupportedOperationException("stub provider has no HTTP API");
+    }
+
+    @Override
+    public String parseBody(Response response) {
+        throw new UnsupportedOperationException("stub provider has no HTTP API");
+    }
+
+    @Override
+    public boolean deleteMessage(MailSession session, String messageId) {
+        return true;
+    }
+}
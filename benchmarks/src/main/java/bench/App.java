@@ -0,0 +1,111 @@
+package bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Доступ к классам приложения. Они лежат в пакете по умолчанию, а JMH
+ * требует, чтобы бенчмарки были в именованном пакете; из именованного пакета
+ * такие классы не импортируются, поэтому они разрешаются здесь один раз
+ * при инициализации. В измеряемом коде остаются только прямые вызовы
+ * интерфейсов (ListCellRenderer) и константные MethodHandle,
+ * которые JIT встраивает так же, как обычный вызов.
+ */
+final class App {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // new EmailMessage(id, from, subject, body, date)
+    static final MethodHandle NEW_MESSAGE = constructor("EmailMessage",
+            String.class, String.class, String.class, String.class, Date.class);
+
+    private App() {
+    }
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Значение статического поля (в том числе package-private), например адаптера провайдера
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T staticField(String className, String fieldName) {
+        try {
+            Field field = type(className).getDeclaredField(fieldName);
+            field.setAccessible(true);
+            return (T) field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static MethodHandle staticMethod(String className, String methodName, Class<?> returnType, Class<?>... parameters) {
+        try {
+            java.lang.reflect.Method method = type(className).getDeclaredMethod(methodName, parameters);
+            method.setAccessible(true);
+            return LOOKUP.unreflect(method).asType(java.lang.invoke.MethodType.methodType(returnType, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static MethodHandle virtualMethod(String className, String methodName, Class<?> returnType, Class<?>... parameters) {
+        try {
+            java.lang.reflect.Method method = type(className).getDeclaredMethod(methodName, parameters);
+            method.setAccessible(true);
+            Class<?>[] withReceiver = new Class<?>[parameters.length + 1];
+            withReceiver[0] = Object.class;
+            System.arraycopy(parameters, 0, withReceiver, 1, parameters.length);
+            return LOOKUP.unreflect(method).asType(java.lang.invoke.MethodType.methodType(returnType, withReceiver));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static MethodHandle constructor(String className, Class<?>... parameters) {
+        try {
+            Constructor<?> constructor = type(className).getDeclaredConstructor(parameters);
+            constructor.setAccessible(true);
+            return LOOKUP.unreflectConstructor(constructor).asType(
+                    java.lang.invoke.MethodType.methodType(Object.class, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Object newMessage(String id, String from, String subject, String body, Date date) {
+        try {
+            return NEW_MESSAGE.invokeExact(id, from, subject, body, date);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Записанный ответ сервиса из resources/fixtures
+     */
+    static byte[] fixture(String name) {
+        try (InputStream in = App.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture: " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String fixtureText(String name) {
+        return new String(fixture(name), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,136 @@
+package bench;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузка на шлюз InboxGateway: 16 клиентов параллельно создают ящики (POST /inboxes)
+ * и ждут в них письмо (GET /inboxes/{address}/wait) через настоящий HTTP. Сервис почты -
+ * заглушка без сети (StubProvider), поэтому измеряется только работа шлюза и EmailService:
+ * очередь запросов, опрос, загрузка тела, извлечение кода и JSON. После каждой операции
+ * ящик удаляется, чтобы число отслеживаемых ящиков не росло от итерации к итерации.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(16)
+@Fork(value = 1, jvmArgsAppend = {"-Dtempemail.store=false", "-Dtempemail.push=false",
+        "-Dtempemail.log.level=WARN"})
+public class GatewayBenchmark {
+    // new TempEmailAPI(providers, bodyFetchConcurrency)
+    private static final MethodHandle NEW_API = App.constructor("TempEmailAPI", List.class, int.class);
+    // new EmailService(emailAPI, background)
+    private static final MethodHandle NEW_SERVICE = App.constructor("EmailService",
+            App.type("TempEmailAPI"), boolean.class);
+    // new InboxGateway(emailService, address)
+    private static final MethodHandle NEW_GATEWAY = App.constructor("InboxGateway",
+            App.type("EmailService"), InetSocketAddress.class);
+    private static final MethodHandle START = App.virtualMethod("InboxGateway", "start", void.class);
+    private static final MethodHandle STOP = App.virtualMethod("InboxGateway", "stop", void.class);
+    private static final MethodHandle PORT = App.virtualMethod("InboxGateway", "getPort", int.class);
+    private static final MethodHandle STOP_SERVICE = App.virtualMethod("EmailService", "stopService", void.class);
+
+    private static final RequestBody EMPTY = RequestBody.create(new byte[0], MediaType.get("application/json"));
+
+    private Object service;
+    private Object gateway;
+    private String baseUrl;
+    private OkHttpClient client;
+
+    @Setup
+    public void setUp() throws Throwable {
+        Object provider = App.constructor("StubProvider").invoke();
+        Object api = NEW_API.invoke(Collections.singletonList(provider), 4);
+        service = NEW_SERVICE.invoke(api, true);
+        gateway = NEW_GATEWAY.invoke(service, new InetSocketAddress("127.0.0.1", 0));
+        START.invoke(gateway);
+        baseUrl = "http://127.0.0.1:" + (int) PORT.invoke(gateway) + "/inboxes";
+        client = new OkHttpClient.Builder()
+                .readTimeout(30, TimeUnit.SECONDS)
+                .build();
+        client.dispatcher().setMaxRequestsPerHost(64);
+    }
+
+    @TearDown
+    public void tearDown() throws Throwable {
+        STOP.invoke(gateway);
+        STOP_SERVICE.invoke(service);
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    @Benchmark
+    public String createInbox() throws IOException {
+        String address = create();
+        delete(address);
+        return address;
+    }
+
+    @Benchmark
+    public String createAndWait() throws IOException {
+        String address = create();
+        Request request = new Request.Builder()
+                .url(inboxUrl(address) + "/wait?timeout=10&subject=Подтвердите")
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() != 200) {
+                throw new IOException("wait failed: HTTP " + response.code());
+            }
+            JsonObject message = JsonParser.parseString(response.body().string()).getAsJsonObject();
+            if (!"4821".equals(message.get("code").getAsString())) {
+                throw new IOException("unexpected code: " + message.get("code"));
+            }
+        }
+        delete(address);
+        return address;
+    }
+
+    private String create() throws IOException {
+        Request request = new Request.Builder().url(baseUrl).post(EMPTY).build();
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() != 201) {
+                throw new IOException("create failed: HTTP " + response.code());
+            }
+            return JsonParser.parseString(response.body().string()).getAsJsonObject().get("address").getAsString();
+        }
+    }
+
+    private void delete(String address) throws IOException {
+        Request request = new Request.Builder().url(inboxUrl(address)).delete().build();
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() != 200) {
+                throw new IOException("delete failed: HTTP " + response.code());
+            }
+        }
+    }
+
+    private String inboxUrl(String address) {
+        return baseUrl + "/" + address;
+    }
+}
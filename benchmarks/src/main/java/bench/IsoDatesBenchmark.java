@@ -0,0 +1,41 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор дат писем Mail.tm (IsoDates.parse) в обоих встречающихся форматах
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IsoDatesBenchmark {
+    private static final MethodHandle PARSE = App.staticMethod("IsoDates", "parse", Date.class, String.class);
+
+    private String offsetDate = "2024-05-01T10:30:00+00:00";
+    private String zuluDate = "2024-05-01T10:30:00.000Z";
+
+    @Benchmark
+    public Date offsetForm() throws Throwable {
+        return (Date) PARSE.invokeExact(offsetDate);
+    }
+
+    @Benchmark
+    public Date zuluForm() throws Throwable {
+        return (Date) PARSE.invokeExact(zuluDate);
+    }
+}
@@ -0,0 +1,75 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обновление списка писем MessagePanel (MessageListModel.setMessages) с N письмами:
+ * опрос без изменений и опрос с новыми письмами сверху и одним удаленным.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ListModelBenchmark {
+    private static final MethodHandle NEW_MODEL = App.constructor("MessageListModel");
+    private static final MethodHandle SET_MESSAGES = App.virtualMethod("MessageListModel", "setMessages", void.class, List.class);
+
+    @Param({"100", "10000", "100000"})
+    private int size;
+
+    private Object model;
+    private List<Object> current;
+    private List<Object> withNewMail;
+    private boolean toggle;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        current = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            current.add(App.newMessage("m" + i, "sender" + i + "@example.com", "Subject " + i, null, new Date()));
+        }
+        // Пять новых писем сверху и одно удаленное в середине
+        withNewMail = new ArrayList<>(size + 5);
+        for (int i = 0; i < 5; i++) {
+            withNewMail.add(App.newMessage("new" + i, "new@example.com", "New " + i, null, new Date()));
+        }
+        withNewMail.addAll(current);
+        withNewMail.remove(5 + size / 2);
+
+        model = NEW_MODEL.invokeExact();
+        SET_MESSAGES.invokeExact(model, (List) current);
+    }
+
+    @Benchmark
+    public Object unchangedPoll() throws Throwable {
+        SET_MESSAGES.invokeExact(model, (List) current);
+        return model;
+    }
+
+    @Benchmark
+    public Object pollWithNewMail() throws Throwable {
+        // Чередуем списки, чтобы каждый вызов применял настоящую разницу
+        toggle = !toggle;
+        SET_MESSAGES.invokeExact(model, (List) (toggle ? withNewMail : current));
+        return model;
+    }
+}
@@ -0,0 +1,71 @@
+package bench;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор записанных ответов Mail.tm и GuerrillaMail теми же потоковыми
+ * разборщиками через JsonStreams.read: ResponseBody -> charStream -> JsonReader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    // JsonStreams.read(body, responseReader)
+    private static final MethodHandle READ = App.staticMethod("JsonStreams", "read", Object.class,
+            ResponseBody.class, App.type("JsonStreams$ResponseReader"))
+            .asType(MethodType.methodType(Object.class, ResponseBody.class, Object.class));
+
+    private final Object mailTmList = App.staticField("MailTMProvider", "MESSAGE_LIST_ADAPTER");
+    private final Object mailTmBody = App.staticField("MailTMProvider", "BODY_ADAPTER");
+    private final Object guerrillaList = App.staticField("GuerrillaMailProvider", "MESSAGE_LIST_ADAPTER");
+    private final Object guerrillaBody = App.staticField("GuerrillaMailProvider", "BODY_ADAPTER");
+
+    private final byte[] mailTmListJson = App.fixture("mailtm-messages.json");
+    private final byte[] mailTmBodyJson = App.fixture("mailtm-message.json");
+    private final byte[] guerrillaListJson = App.fixture("guerrilla-list.json");
+    private final byte[] guerrillaBodyJson = App.fixture("guerrilla-email.json");
+
+    @Benchmark
+    public List<?> mailTmMessageList() throws Throwable {
+        return (List<?>) read(mailTmListJson, mailTmList);
+    }
+
+    @Benchmark
+    public String mailTmMessageBody() throws Throwable {
+        return (String) read(mailTmBodyJson, mailTmBody);
+    }
+
+    @Benchmark
+    public List<?> guerrillaMessageList() throws Throwable {
+        return (List<?>) read(guerrillaListJson, guerrillaList);
+    }
+
+    @Benchmark
+    public String guerrillaMessageBody() throws Throwable {
+        return (String) read(guerrillaBodyJson, guerrillaBody);
+    }
+
+    private static Object read(byte[] payload, Object responseReader) throws Throwable {
+        return READ.invokeExact(ResponseBody.create(payload, JSON), responseReader);
+    }
+}
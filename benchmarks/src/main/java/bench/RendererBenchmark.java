@@ -0,0 +1,80 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.ListCellRenderer;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отрисовка одной ячейки списка писем (MessagePanel.MessageListRenderer) - то,
+ * что происходит для каждой видимой строки при прокрутке
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RendererBenchmark {
+    private static final int CELL_WIDTH = 400;
+    private static final int MESSAGES = 512;
+
+    private JList<Object> list;
+    private ListCellRenderer<Object> renderer;
+    private Object[] messages;
+    private int cellHeight;
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Throwable {
+        DefaultListModel<Object> model = new DefaultListModel<>();
+        list = new JList<>(model);
+        MethodHandle newRenderer = App.constructor("MessagePanel$MessageListRenderer", JList.class);
+        renderer = (ListCellRenderer<Object>) (Object) newRenderer.invokeExact(list);
+        cellHeight = (int) App.virtualMethod("MessagePanel$MessageListRenderer", "getCellHeight", int.class)
+                .invokeExact((Object) renderer);
+
+        messages = new Object[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            messages[i] = App.newMessage("m" + i, "sender" + i + "@example.com",
+                    "Verify your email address to finish creating your account #" + i, null, new Date());
+            model.addElement(messages[i]);
+        }
+        image = new BufferedImage(CELL_WIDTH, cellHeight, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public Component renderCell() {
+        int index = next++ & (MESSAGES - 1);
+        Component cell = renderer.getListCellRendererComponent(list, messages[index], index, index == 0, false);
+        cell.setBounds(0, 0, CELL_WIDTH, cellHeight);
+        cell.paint(graphics);
+        return cell;
+    }
+}
@@ -0,0 +1,190 @@
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Пул заранее созданных и авторизованных ящиков. Фоновый поток держит
+ * количество готовых аккаунтов между нижней и верхней границей: когда пул
+ * опускается ниже lowWatermark, он дозаполняется до highWatermark.
+ * Аккаунты старше ttl выбрасываются - токены сервисов живут ограниченное время -
+ * и удаляются на сервисе через disposer, чтобы не оставлять брошенные ящики.
+ * Так же при остановке удаляются все готовые аккаунты, которые так никто и не взял.
+ */
+public class AccountPool {
+    private static final Log log = Log.get(AccountPool.class);
+
+    // Сколько shutdown() ждет прерванного дозаполнения, прежде чем удалять готовые аккаунты
+    private static final long SHUTDOWN_WAIT_SECONDS = 5;
+
+    private final Supplier<EmailAccount> factory;
+    private final Consumer<EmailAccount> disposer;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final long ttlMillis;
+
+    private final ConcurrentLinkedDeque<PooledAccount> ready = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final ScheduledExecutorService refillExecutor;
+    private volatile boolean stopped;
+
+    public AccountPool(Supplier<EmailAccount> factory, Consumer<EmailAccount> disposer,
+                       int lowWatermark, int highWatermark, long ttlMillis) {
+        if (lowWatermark < 0 || highWatermark < lowWatermark || highWatermark < 1) {
+            throw new IllegalArgumentException("invalid watermarks: " + lowWatermark + ".." + highWatermark);
+        }
+        this.factory = factory;
+        this.disposer = disposer;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.ttlMillis = ttlMillis;
+        // Пополнение пула уступает сервису место для интерактивных запросов
+        this.refillExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(() -> {
+                RequestPriority.setCurrent(RequestPriority.BACKGROUND);
+                r.run();
+            }, "account-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Запускает первоначальное заполнение и периодическую очистку устаревших аккаунтов
+     */
+    public void start() {
+        long sweepPeriod = Math.max(1000, ttlMillis / 4);
+        refillExecutor.scheduleWithFixedDelay(() -> {
+            evictExpired();
+            triggerRefill();
+        }, 0, sweepPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Возвращает готовый аккаунт без сетевых запросов или null, если пул пуст.
+     * В любом случае запускает дозаполнение.
+     */
+    public EmailAccount take() {
+        long now = System.currentTimeMillis();
+        PooledAccount pooled;
+        EmailAccount account = null;
+        while (account == null && (pooled = ready.pollFirst()) != null) {
+            size.decrementAndGet();
+            if (now - pooled.createdAt < ttlMillis) {
+                account = pooled.account;
+            } else {
+                disposeAsync(pooled.account);
+            }
+        }
+        triggerRefill();
+        return account;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Останавливает пул и удаляет на сервисе все готовые аккаунты. Выполняет
+     * сетевые запросы в вызывающем потоке.
+     */
+    public void shutdown() {
+        stopped = true;
+        refillExecutor.shutdownNow();
+        try {
+            refillExecutor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PooledAccount pooled;
+        while ((pooled = ready.pollFirst()) != null) {
+            size.decrementAndGet();
+            dispose(pooled.account);
+        }
+    }
+
+    private void triggerRefill() {
+        if (size.get() >= lowWatermark && size.get() > 0) {
+            return;
+        }
+        if (!refilling.compareAndSet(false, true)) {
+            return; // дозаполнение уже идет
+        }
+        try {
+            refillExecutor.execute(this::refill);
+        } catch (Exception e) {
+            refilling.set(false); // пул остановлен
+        }
+    }
+
+    private void refill() {
+        try {
+            while (size.get() < highWatermark && !Thread.currentThread().isInterrupted()) {
+                EmailAccount account = factory.get();
+                if (account == null) {
+                    // Сервисы недоступны - попробуем при следующей очистке
+                    log.warn("Account pool refill failed, pool size: " + size.get());
+                    break;
+                }
+                PooledAccount pooled = new PooledAccount(account, System.currentTimeMillis());
+                ready.addLast(pooled);
+                size.incrementAndGet();
+                if (stopped && ready.removeFirstOccurrence(pooled)) {
+                    // shutdown() не дождался дозаполнения и уже разобрал пул - аккаунт некому забрать
+                    size.decrementAndGet();
+                    dispose(account);
+                    break;
+                }
+            }
+        } finally {
+            refilling.set(false);
+        }
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledAccount> it = ready.iterator();
+        while (it.hasNext()) {
+            PooledAccount pooled = it.next();
+            if (now - pooled.createdAt >= ttlMillis && ready.removeFirstOccurrence(pooled)) {
+                size.decrementAndGet();
+                dispose(pooled.account);
+            }
+        }
+    }
+
+    /**
+     * Удаляет устаревший аккаунт в фоне - take() не должен ждать сети
+     */
+    private void disposeAsync(EmailAccount account) {
+        try {
+            refillExecutor.execute(() -> dispose(account));
+        } catch (Exception e) {
+            // пул остановлен - ящик истечет на сервисе сам
+        }
+    }
+
+    private void dispose(EmailAccount account) {
+        try {
+            disposer.accept(account);
+        } catch (Exception e) {
+            log.warn("Could not delete pooled account " + account.getEmail() + ": " + e.getMessage());
+        }
+    }
+
+    private static final class PooledAccount {
+        final EmailAccount account;
+        final long createdAt;
+
+        PooledAccount(EmailAccount account, long createdAt) {
+            this.account = account;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Превращает тело письма в безопасный для показа текст: HTML разбирается
+ * за один проход, скрипты, стили и заголовок документа выбрасываются, блочные
+ * теги становятся переводами строк, сущности раскодируются. Результат
+ * ограничивается по длине и кэшируется по ящику и ID письма (ID уникальны
+ * только внутри ящика). Вызывать не из EDT.
+ */
+public class BodyRenderer {
+    // Сколько символов текста показывать максимум
+    private static final int MAX_CHARS = Integer.getInteger("tempemail.body.max.chars", 1_000_000);
+    // Сколько символов отрендеренного текста держать в кэше
+    private static final long CACHE_CHARS = Long.getLong("tempemail.body.cache.chars", 8_000_000L);
+    private static final int SNIFF_CHARS = 8192;
+    private static final Pattern HTML_MARKER = Pattern.compile(
+            "(?i)<(!doctype|html|head|body|div|p|br|table|span|a|img|font|center)\\b");
+
+    private final Map<String, String> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedChars;
+
+    /**
+     * Текст письма для показа; повторные вызовы для того же письма берут его из кэша
+     */
+    public String render(String account, EmailMessage message) {
+        String body = message.getBody();
+        if (body == null) {
+            return null;
+        }
+        String key = account + '\0' + message.getId();
+        synchronized (this) {
+            String cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        String text = isHtml(body) ? htmlToText(body) : body;
+        if (text.length() > MAX_CHARS) {
+            text = text.substring(0, MAX_CHARS) + "\n\n[… письмо обрезано, показано " + MAX_CHARS +
+                    " из " + text.length() + " символов]";
+        }
+        put(key, text);
+        return text;
+    }
+
+    private synchronized void put(String key, String text) {
+        String previous = cache.put(key, text);
+        if (previous != null) {
+            cachedChars -= previous.length();
+        }
+        cachedChars += text.length();
+        Iterator<Map.Entry<String, String>> it = cache.entrySet().iterator();
+        while (cachedChars > CACHE_CHARS && it.hasNext()) {
+            Map.Entry<String, String> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                break;
+            }
+            cachedChars -= eldest.getValue().length();
+            it.remove();
+        }
+    }
+
+    static boolean isHtml(String body) {
+        return HTML_MARKER.matcher(body.length() > SNIFF_CHARS ? body.substring(0, SNIFF_CHARS) : body).find();
+    }
+
+    /**
+     * Однопроходное преобразование HTML в текст
+     */
+    static String htmlToText(String html) {
+        StringBuilder out = new StringBuilder(Math.min(html.length(), MAX_CHARS + 1024));
+        int length = html.length();
+        int i = 0;
+        boolean space = false;
+
+        while (i < length && out.length() <= MAX_CHARS) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                if (html.startsWith("<!--", i)) {
+                    int end = html.indexOf("-->", i + 4);
+                    i = end < 0 ? length : end + 3;
+                    continue;
+                }
+                int end = html.indexOf('>', i + 1);
+                if (end < 0) {
+                    break;
+                }
+                String tag = tagName(html, i + 1, end);
+                i = end + 1;
+
+                if (tag.equals("script") || tag.equals("style") || tag.equals("head") || tag.equals("title")) {
+                    // Содержимое этих элементов не показывается
+                    int close = indexOfIgnoreCase(html, "</" + tag, i);
+                    if (close < 0) {
+                        break;
+                    }
+                    int closeEnd = html.indexOf('>', close);
+                    i = closeEnd < 0 ? length : closeEnd + 1;
+                } else if (isLineBreak(tag)) {
+                    newline(out);
+                    space = false;
+                } else if (tag.equals("td") || tag.equals("th")) {
+                    space = true;
+                }
+                continue;
+            }
+
+            if (c == '&') {
+                int semicolon = html.indexOf(';', i);
+                if (semicolon > i && semicolon - i <= 10) {
+                    String decoded = decodeEntity(html.substring(i + 1, semicolon));
+                    if (decoded != null) {
+                        appendText(out, decoded, space);
+                        space = false;
+                        i = semicolon + 1;
+                        continue;
+                    }
+                }
+            }
+
+            if (Character.isWhitespace(c)) {
+                space = true;
+            } else {
+                if (space && out.length() > 0 && out.charAt(out.length() - 1) != '\n') {
+                    out.append(' ');
+                }
+                space = false;
+                out.append(c);
+            }
+            i++;
+        }
+        return out.toString().trim();
+    }
+
+    private static String tagName(String html, int start, int end) {
+        int i = start;
+        if (i < end && html.charAt(i) == '/') {
+            i++;
+        }
+        int nameStart = i;
+        while (i < end && Character.isLetterOrDigit(html.charAt(i))) {
+            i++;
+        }
+        return html.substring(nameStart, i).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isLineBreak(String tag) {
+        switch (tag) {
+            case "br": case "p": case "div": case "tr": case "li": case "table":
+            case "h1": case "h2": case "h3": case "h4": case "h5": case "h6":
+            case "blockquote": case "pre": case "hr": case "ul": case "ol":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void newline(StringBuilder out) {
+        // Не больше одной пустой строки подряд
+        int n = out.length();
+        if (n == 0 || (n >= 2 && out.charAt(n - 1) == '\n' && out.charAt(n - 2) == '\n')) {
+            return;
+        }
+        out.append('\n');
+    }
+
+    private static void appendText(StringBuilder out, String text, boolean space) {
+        if (space && out.length() > 0 && out.charAt(out.length() - 1) != '\n') {
+            out.append(' ');
+        }
+        out.append(text);
+    }
+
+    private static String decodeEntity(String entity) {
+        if (entity.startsWith("#")) {
+            try {
+                int code = entity.length() > 1 && (entity.charAt(1) == 'x' || entity.charAt(1) == 'X')
+                        ? Integer.parseInt(entity.substring(2), 16)
+                        : Integer.parseInt(entity.substring(1));
+                return Character.isValidCodePoint(code) ? new String(Character.toChars(code)) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        switch (entity) {
+            case "nbsp": return " ";
+            case "amp": return "&";
+            case "lt": return "<";
+            case "gt": return ">";
+            case "quot": return "\"";
+            case "apos": return "'";
+            case "laquo": return "«";
+            case "raquo": return "»";
+            case "mdash": return "—";
+            case "ndash": return "–";
+            case "hellip": return "…";
+            case "copy": return "©";
+            default: return null;
+        }
+    }
+
+    private static int indexOfIgnoreCase(String text, String needle, int from) {
+        int last = text.length() - needle.length();
+        for (int i = from; i <= last; i++) {
+            if (text.regionMatches(true, i, needle, 0, needle.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,63 @@
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сетевой перехватчик: сервисы временной почты не отдают пригодных заголовков
+ * кэширования, поэтому политика кэширования задается по тегу {@link CachePolicy} запроса.
+ */
+public class CacheControlInterceptor implements Interceptor {
+    private static final String IMMUTABLE = "private, max-age=31536000, immutable";
+    private static final String REVALIDATE = "private, no-cache";
+
+    private final AtomicLong networkRequests = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        networkRequests.incrementAndGet();
+        Response response = chain.proceed(chain.request());
+        if (response.code() == 304) {
+            notModified.incrementAndGet();
+        }
+
+        CachePolicy policy = chain.request().tag(CachePolicy.class);
+        if (policy == null || !"GET".equals(chain.request().method()) || !response.isSuccessful()) {
+            return response;
+        }
+
+        if (policy == CachePolicy.IMMUTABLE) {
+            return response.newBuilder()
+                    .removeHeader("Pragma")
+                    .removeHeader("Expires")
+                    .header("Cache-Control", IMMUTABLE)
+                    .build();
+        }
+
+        // Перепроверять имеет смысл, только если сервис дал валидатор
+        if (response.header("ETag") != null || response.header("Last-Modified") != null) {
+            return response.newBuilder()
+                    .removeHeader("Pragma")
+                    .removeHeader("Expires")
+                    .header("Cache-Control", REVALIDATE)
+                    .build();
+        }
+        return response;
+    }
+
+    /**
+     * Сколько запросов реально ушло в сеть
+     */
+    public long getNetworkCount() {
+        return networkRequests.get();
+    }
+
+    /**
+     * Сколько условных запросов вернули 304 Not Modified
+     */
+    public long getNotModifiedCount() {
+        return notModified.get();
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Как кэшировать ответ на запрос. Сервисы помечают запросы тегом
+ * {@code request.tag(CachePolicy.class)}, а перехватчики HTTP-клиента
+ * приводят заголовки ответа к нужной политике.
+ */
+public enum CachePolicy {
+    /**
+     * Ресурс никогда не меняется (полное письмо по ID) - отдается из кэша без сети
+     */
+    IMMUTABLE,
+
+    /**
+     * Список, который может измениться - хранится в кэше, но каждый раз
+     * перепроверяется условным запросом (ETag / If-Modified-Since)
+     */
+    REVALIDATE
+}
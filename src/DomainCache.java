@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Кэш списка доменов сервиса с TTL. Когда список стареет, он обновляется
+ * в фоне, а до тех пор выдается прежний; синхронная загрузка нужна только
+ * при первом обращении или после истечения TTL. Домены выдаются по кругу,
+ * чтобы нагрузка распределялась по всем активным доменам. Если обновить
+ * список не удалось, выдается прежний, а следующая попытка - не раньше
+ * чем через retryMillis.
+ */
+public class DomainCache {
+    private static final Log log = Log.get(DomainCache.class);
+
+    private final Loader loader;
+    private final long ttlMillis;
+    private final long refreshAfterMillis;
+    private final long retryMillis;
+
+    private volatile List<String> domains = Collections.emptyList();
+    private volatile long loadedAt;
+    // Время последней неудачной загрузки - до retryMillis после нее прежний список не обновляется
+    private volatile long failedAt;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // Фоновое обновление уступает сервису место для интерактивных запросов
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(() -> {
+            RequestPriority.setCurrent(RequestPriority.BACKGROUND);
+            r.run();
+        }, "domain-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DomainCache(Loader loader, long ttlMillis, long retryMillis) {
+        this.loader = loader;
+        this.ttlMillis = ttlMillis;
+        this.refreshAfterMillis = ttlMillis * 3 / 4;
+        this.retryMillis = retryMillis;
+    }
+
+    /**
+     * Следующий домен по кругу или null, если доменов нет
+     */
+    public String next() throws IOException {
+        List<String> current = domains;
+        long now = System.currentTimeMillis();
+        long age = now - loadedAt;
+        boolean retryAllowed = now - failedAt >= retryMillis;
+
+        if (current.isEmpty()) {
+            current = reload(); // выдавать нечего - загружаем, даже если прошлая попытка не удалась
+        } else if (age >= ttlMillis && retryAllowed) {
+            current = reload();
+        } else if (age >= refreshAfterMillis && retryAllowed) {
+            refreshInBackground();
+        }
+
+        if (current.isEmpty()) {
+            return null;
+        }
+        int index = Math.floorMod(cursor.getAndIncrement(), current.size());
+        return current.get(index);
+    }
+
+    public List<String> getDomains() {
+        return domains;
+    }
+
+    private synchronized List<String> reload() throws IOException {
+        // Пока ждали блокировку, список мог обновить другой поток или попытка другого потока не удалась
+        long now = System.currentTimeMillis();
+        if (!domains.isEmpty() && (now - loadedAt < ttlMillis || now - failedAt < retryMillis)) {
+            return domains;
+        }
+        try {
+            store(loader.load());
+        } catch (IOException | RuntimeException e) {
+            failedAt = System.currentTimeMillis();
+            if (domains.isEmpty()) {
+                throw e;
+            }
+            // Сервис недоступен - продолжаем работать со старым списком
+            log.warn("Domain refresh failed, using cached list for " + retryMillis + " ms: " + e.getMessage());
+        }
+        return domains;
+    }
+
+    private void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refreshExecutor.execute(() -> {
+            try {
+                store(loader.load());
+            } catch (IOException | RuntimeException e) {
+                failedAt = System.currentTimeMillis();
+                log.warn("Background domain refresh failed: " + e.getMessage());
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    private void store(List<String> loaded) {
+        if (loaded != null && !loaded.isEmpty()) {
+            domains = Collections.unmodifiableList(loaded);
+            loadedAt = System.currentTimeMillis();
+        } else {
+            failedAt = System.currentTimeMillis(); // пустой ответ не заменяет рабочий список
+        }
+    }
+
+    /**
+     * Загрузка актуального списка доменов у сервиса
+     */
+    public interface Loader {
+        List<String> load() throws IOException;
+    }
+}
@@ -3,13 +3,22 @@ import java.util.List;
 public class EmailAccount {
     private String email;
     private String password;
-    private List<EmailMessage> messages;
+    private volatile List<EmailMessage> messages;
+    private volatile MailSession session;
+    // Когда ящик создан на сервисе - по этому времени истекает его хранение
+    private long createdAt = System.currentTimeMillis();
 
     public EmailAccount(String email, String password) {
         this.email = email;
         this.password = password;
     }
 
+    public EmailAccount(String email, String password, MailSession session) {
+        this.email = email;
+        this.password = password;
+        this.session = session;
+    }
+
     // Getters and Setters
     public String getEmail() { return email; }
     public void setEmail(String email) { this.email = email; }
@@ -20,8 +29,16 @@ public class EmailAccount {
     public List<EmailMessage> getMessages() { return messages; }
     public void setMessages(List<EmailMessage> messages) { this.messages = messages; }
 
+    public MailSession getSession() { return session; }
+    public void setSession(MailSession session) { this.session = session; }
+
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+
+    public SyncState getSyncState() { return session != null ? session.getSyncState() : null; }
+
     @Override
     public String toString() {
         return email;
     }
-}
\ No newline at end of file
+}
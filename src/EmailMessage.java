@@ -4,7 +4,7 @@ public class EmailMessage {
     private String id;
     private String from;
     private String subject;
-    private String body;
+    private volatile String body; // null, пока тело не загружено
     private Date date;
 
     public EmailMessage(String id, String from, String subject, String body, Date date) {
@@ -27,6 +27,7 @@ public class EmailMessage {
 
     public String getBody() { return body; }
     public void setBody(String body) { this.body = body; }
+    public boolean isBodyLoaded() { return body != null; }
 
     public Date getDate() { return date; }
     public void setDate(Date date) { this.date = date; }
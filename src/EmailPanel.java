@@ -13,6 +13,7 @@ public class EmailPanel extends JPanel {
     private JButton createEmailButton;
     private JButton refreshButton;
     private JButton copyEmailButton;
+    private JButton deleteEmailButton;
 
     public EmailPanel(EmailService emailService) {
         this.emailService = emailService;
@@ -30,30 +31,35 @@ public class EmailPanel extends JPanel {
         Font smallFont = MainFrame.getSmallFont();
 
         // Панель с кнопками
-        JPanel buttonPanel = new JPanel(new GridLayout(1, 3, 10, 0));
+        JPanel buttonPanel = new JPanel(new GridLayout(1, 4, 10, 0));
         buttonPanel.setBackground(new Color(240, 240, 240));
         buttonPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
 
         createEmailButton = new JButton("Создать временный email");
         refreshButton = new JButton("Обновить сообщения");
         copyEmailButton = new JButton("Копировать email");
+        deleteEmailButton = new JButton("Удалить email");
 
         // Устанавливаем одинаковый размер для всех кнопок
         Dimension buttonSize = new Dimension(200, 45);
         createEmailButton.setPreferredSize(buttonSize);
         refreshButton.setPreferredSize(buttonSize);
         copyEmailButton.setPreferredSize(buttonSize);
+        deleteEmailButton.setPreferredSize(buttonSize);
 
         // Стилизация кнопок
         stylePrimaryButton(createEmailButton);
         stylePrimaryButton(refreshButton);
         styleSecondaryButton(copyEmailButton);
+        styleSecondaryButton(deleteEmailButton);
 
         copyEmailButton.setEnabled(false);
+        deleteEmailButton.setEnabled(false);
 
         buttonPanel.add(createEmailButton);
         buttonPanel.add(refreshButton);
         buttonPanel.add(copyEmailButton);
+        buttonPanel.add(deleteEmailButton);
 
         // Панель с email
         JPanel emailPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -231,6 +237,7 @@ public class EmailPanel extends JPanel {
                                 String email = account.getEmail();
                                 emailLabel.setText(email);
                                 copyEmailButton.setEnabled(true);
+                                deleteEmailButton.setEnabled(true);
 
                                 JOptionPane.showMessageDialog(EmailPanel.this,
                                         "Новый email создан: " + email,
@@ -331,6 +338,38 @@ public class EmailPanel extends JPanel {
                 }
             }
         });
+
+        deleteEmailButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                EmailAccount account = emailService.getCurrentAccount();
+                if (account == null) {
+                    return;
+                }
+                int answer = JOptionPane.showConfirmDialog(EmailPanel.this,
+                        "Удалить ящик " + account.getEmail() + " вместе с письмами?",
+                        "Удаление email",
+                        JOptionPane.YES_NO_OPTION);
+                if (answer != JOptionPane.YES_OPTION) {
+                    return;
+                }
+
+                deleteEmailButton.setEnabled(false);
+                copyEmailButton.setEnabled(false);
+                emailLabel.setText("Email не создан");
+                statusLabel.setText("Удаление email...");
+                statusLabel.setForeground(Color.BLUE);
+
+                new Thread(() -> {
+                    boolean deleted = emailService.deleteAccount(account);
+                    SwingUtilities.invokeLater(() -> {
+                        // Локально ящик удален в любом случае, на сервисе он мог остаться до истечения
+                        statusLabel.setText(deleted ? "Email удален" : "Email удален локально");
+                        statusLabel.setForeground(new Color(24, 129, 20));
+                    });
+                }).start();
+            }
+        });
     }
 
     private void copyToClipboard(String text) {
@@ -355,6 +394,7 @@ public class EmailPanel extends JPanel {
     public void updateEmailLabel(String email) {
         emailLabel.setText(email);
         copyEmailButton.setEnabled(true);
+        deleteEmailButton.setEnabled(true);
     }
 
     public void setStatus(String status, Color color) {
@@ -1,85 +1,625 @@
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
+/**
+ * Управляет множеством временных ящиков одновременно. У каждого аккаунта
+ * своя сессия (MailSession), все ящики опрашиваются параллельно,
+ * каждый - по своему адаптивному расписанию (PollSchedule).
+ */
 public class EmailService {
+    private static final Log log = Log.get(EmailService.class);
+
+    // Сколько ящиков опрашивается одновременно
+    private static final int POLL_THREADS = Integer.getInteger("tempemail.poll.threads", 4);
+    // Push-доставка через поток событий сервиса (Mail.tm Mercure) вместо опроса
+    private static final boolean PUSH_ENABLED = Boolean.parseBoolean(System.getProperty("tempemail.push", "true"));
+    private static final long PUSH_RECONNECT_MIN_SECONDS = 5;
+    private static final long PUSH_RECONNECT_MAX_SECONDS = 300;
+    // Пул готовых ящиков: включается ненулевой нижней границей (каждый ящик в пуле -
+    // реальный аккаунт на сервисе, поэтому по умолчанию пул выключен)
+    private static final int POOL_LOW = Integer.getInteger("tempemail.pool.low", 0);
+    private static final int POOL_HIGH = Integer.getInteger("tempemail.pool.high", 2);
+    private static final long POOL_TTL_MINUTES = Long.getLong("tempemail.pool.ttl.minutes", 10);
+    // Локальное хранилище ящиков и писем между запусками
+    private static final boolean STORE_ENABLED = Boolean.parseBoolean(System.getProperty("tempemail.store", "true"));
+    private static final File STORE_FILE = new File(System.getProperty("tempemail.store.dir",
+            System.getProperty("user.home") + File.separator + ".tempemail"), "messages.log");
+
     private TempEmailAPI emailAPI;
-    private EmailAccount currentAccount;
+    // Фоновая работа: восстановление всех ящиков, их опрос и push, пул готовых ящиков
+    private final boolean background;
+    private final AccountPool accountPool;
+    private final MessageStore store;
+    private final MessageIndex messageIndex = new MessageIndex();
+    private final MessageExtractor extractor = new MessageExtractor();
+    // Ожидающие письма (awaitMessage) по адресу ящика
+    private final Map<String, List<MessageWaiter>> waiters = new ConcurrentHashMap<>();
+    private final Map<String, EmailAccount> accounts = new ConcurrentHashMap<>();
+    private volatile EmailAccount currentAccount;
     private ScheduledExecutorService scheduler;
-    private MessageListener messageListener;
+    private ExecutorService pollExecutor;
+    private volatile MessageListener messageListener;
+    private final Map<String, SseSubscription> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Integer> reconnectAttempts = new ConcurrentHashMap<>();
+    private final Map<String, PollSchedule> schedules = new ConcurrentHashMap<>();
+    // Следующий запланированный опрос каждого ящика
+    private final Map<String, PendingPoll> pendingPolls = new ConcurrentHashMap<>();
+    // Загружать тела всех новых писем сразу при синхронизации, а не при просмотре
+    private volatile boolean eagerBodyFetch = Boolean.getBoolean("tempemail.fetch.eager");
 
     public EmailService() {
-        this.emailAPI = new TempEmailAPI();
+        this(true);
+    }
+
+    /**
+     * @param background false - разовый режим (консольные команды): ящики прошлых запусков
+     *                   не восстанавливаются, нужный открывается через {@link #openAccount},
+     *                   ящики не опрашиваются в фоне, пока никто не ждет письмо, push и пул выключены
+     */
+    public EmailService(boolean background) {
+        this(new TempEmailAPI(), background);
+    }
+
+    /**
+     * Сервис поверх готового API со своим набором сервисов почты (тесты, бенчмарки)
+     */
+    EmailService(TempEmailAPI emailAPI, boolean background) {
+        this.background = background;
+        this.emailAPI = emailAPI;
+        if (background && POOL_LOW > 0) {
+            this.accountPool = new AccountPool(emailAPI::createRandomEmail, emailAPI::deleteAccount,
+                    POOL_LOW, Math.max(POOL_LOW, POOL_HIGH), TimeUnit.MINUTES.toMillis(POOL_TTL_MINUTES));
+            this.accountPool.start();
+        } else {
+            this.accountPool = null;
+        }
+        this.store = openStore();
+        if (background) {
+            restoreAccounts();
+        }
+    }
+
+    private static MessageStore openStore() {
+        if (!STORE_ENABLED) {
+            return null;
+        }
+        try {
+            return MessageStore.open(STORE_FILE);
+        } catch (IOException e) {
+            log.warn("Message store unavailable, continuing without it: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Возвращает в работу ящики прошлого запуска: письма сразу доступны из хранилища,
+     * а первая синхронизация догружает только изменения. Текущим становится последний ящик,
+     * поток событий открывается только для него. Ящики старше срока хранения сервиса
+     * удаляются из хранилища.
+     */
+    private void restoreAccounts() {
+        if (store == null) {
+            return;
+        }
+        List<EmailAccount> restored = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (EmailAccount account : store.loadAccounts()) {
+            MailProvider provider = emailAPI.getProvider(account.getSession().getProvider());
+            if (provider == null) {
+                continue; // сервис больше не подключен
+            }
+            if (now - account.getCreatedAt() > provider.getRetention().toMillis()) {
+                log.info("Dropping expired account: " + account.getEmail());
+                store.removeAccount(account);
+                continue;
+            }
+            store.saveAccount(account); // дописывает время создания в записи прошлых версий
+            restored.add(account);
+        }
+        for (int i = 0; i < restored.size(); i++) {
+            EmailAccount account = restored.get(i);
+            boolean current = i == restored.size() - 1;
+            messageIndex.addAll(account.getEmail(), account.getMessages());
+            track(account, current);
+            if (current) {
+                currentAccount = account;
+            }
+        }
+    }
+
+    /**
+     * Открывает сохраненный ящик по адресу (уже открытый - возвращает как есть);
+     * null, если в хранилище его нет
+     */
+    public EmailAccount openAccount(String email) {
+        EmailAccount account = accounts.get(email);
+        if (account != null || store == null) {
+            return account;
+        }
+        account = store.loadAccount(email);
+        if (account == null || emailAPI.getProvider(account.getSession().getProvider()) == null) {
+            return null;
+        }
+        messageIndex.addAll(account.getEmail(), account.getMessages());
+        track(account, false);
+        return account;
     }
 
+    /**
+     * Создает новый ящик, делает его текущим и добавляет к опрашиваемым
+     */
     public EmailAccount createNewEmail() {
         try {
-            System.out.println("Attempting to create real temporary email...");
-            currentAccount = emailAPI.createRandomEmail();
+            log.debug("Attempting to create real temporary email...");
+            // Готовый ящик из пула выдается сразу; если пул пуст - создаем как раньше
+            EmailAccount account = accountPool != null ? accountPool.take() : null;
+            if (account == null) {
+                account = emailAPI.createRandomEmail();
+            }
 
-            if (currentAccount != null) {
-                System.out.println("Successfully created: " + currentAccount.getEmail());
-                startMessagePolling();
-                return currentAccount;
+            if (account != null) {
+                log.info("Successfully created: " + account.getEmail());
+                addAccount(account);
+                currentAccount = account;
+                return account;
             } else {
-                System.err.println("Failed to create email - all services unavailable");
+                log.error("Failed to create email - all services unavailable");
             }
 
         } catch (Exception e) {
-            System.err.println("Error creating email: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error creating email", e);
         }
 
         return null;
     }
 
+    public void addAccount(EmailAccount account) {
+        if (store != null) {
+            store.saveAccount(account);
+        }
+        scheduleFor(account).markActive();
+        track(account, true);
+    }
+
+    private void track(EmailAccount account, boolean push) {
+        accounts.put(account.getEmail(), account);
+        if (!background) {
+            return; // опрос начнется, когда кто-то будет ждать письмо
+        }
+        startMessagePolling();
+        // Первая синхронизация нового ящика - сразу, дальше по расписанию ящика
+        schedulePoll(account, 0);
+        if (push && PUSH_ENABLED) {
+            startPush(account);
+        }
+    }
+
+    public void removeAccount(EmailAccount account) {
+        accounts.remove(account.getEmail());
+        cancelPoll(account);
+        schedules.remove(account.getEmail());
+        reconnectAttempts.remove(account.getEmail());
+        SseSubscription subscription = subscriptions.remove(account.getEmail());
+        if (subscription != null) {
+            subscription.close();
+        }
+        if (currentAccount == account) {
+            currentAccount = null;
+        }
+        if (store != null) {
+            store.removeAccount(account);
+        }
+        messageIndex.removeAccount(account.getEmail());
+        List<MessageWaiter> accountWaiters = waiters.remove(account.getEmail());
+        if (accountWaiters != null) {
+            for (MessageWaiter waiter : accountWaiters) {
+                waiter.future.cancel(false);
+            }
+        }
+        MessageListener listener = messageListener;
+        if (listener != null) {
+            listener.onAccountRemoved(account);
+        }
+    }
+
+    /**
+     * Перестает следить за ящиком и удаляет его на сервисе.
+     * Вызывать не из EDT - выполняется HTTP-запрос.
+     */
+    public boolean deleteAccount(EmailAccount account) {
+        removeAccount(account);
+        return emailAPI.deleteAccount(account);
+    }
+
+    public EmailAccount getAccount(String email) {
+        return accounts.get(email);
+    }
+
+    public Collection<EmailAccount> getAccounts() {
+        return Collections.unmodifiableCollection(accounts.values());
+    }
+
     public List<EmailMessage> refreshMessages() {
-        if (currentAccount != null) {
-            try {
-                System.out.println("Refreshing REAL messages for: " + currentAccount.getEmail());
-                List<EmailMessage> messages = emailAPI.getMessages(currentAccount.getEmail());
+        EmailAccount account = currentAccount;
+        if (account == null) {
+            log.warn("No current account - cannot refresh messages");
+            return null;
+        }
+        return refreshMessages(account);
+    }
+
+    /**
+     * Синхронизирует ящик. Если синхронизация этого ящика уже идет, новая не запускается:
+     * она будет повторена сразу после текущей, а метод вернет последний известный список.
+     */
+    public List<EmailMessage> refreshMessages(EmailAccount account) {
+        PollSchedule schedule = scheduleFor(account);
+        if (!schedule.tryBegin()) {
+            return account.getMessages();
+        }
+
+        List<EmailMessage> result = null;
+        Metrics.Poll pollMetrics = Metrics.poll(account.getSession().getProvider());
+        long started = System.nanoTime();
+        try {
+            log.debug(() -> "Refreshing messages for: " + account.getEmail());
+            SyncState syncState = account.getSyncState();
+            long addedBefore = syncState.getAddedCount();
+            List<EmailMessage> messages = emailAPI.syncMessages(account);
+            schedule.onSuccess((int) (syncState.getAddedCount() - addedBefore));
+            pollMetrics.recordSuccess(System.nanoTime() - started, messages.size());
 
-                if (messages != null) {
-                    currentAccount.setMessages(messages);
-                    System.out.println("Retrieved " + messages.size() + " real messages");
-                    return messages;
+            if (eagerBodyFetch) {
+                emailAPI.fetchBodies(account, messages);
+            }
+            List<EmailMessage> previous = account.getMessages();
+            account.setMessages(messages);
+            notifyWaiters(account, previous, messages);
+            persist(account, messages);
+            messageIndex.addAll(account.getEmail(), messages);
+            messageIndex.retainOnly(account.getEmail(), messages);
+            log.debug(() -> "Retrieved " + messages.size() + " messages for " + account.getEmail());
+
+            MessageListener listener = messageListener;
+            if (listener != null) {
+                listener.onMessagesUpdated(account, messages);
+            }
+            result = messages;
+        } catch (ProviderException e) {
+            pollMetrics.recordFailure(System.nanoTime() - started);
+            schedule.onError(e.getStatusCode());
+            log.warn("Error refreshing messages for " + account.getEmail() + ": " + e.getMessage());
+        } catch (Exception e) {
+            pollMetrics.recordFailure(System.nanoTime() - started);
+            schedule.onError(0);
+            log.warn("Error refreshing messages for " + account.getEmail(), e);
+        } finally {
+            if (schedule.end()) {
+                // Пока шла синхронизация, пришел еще один запрос (push-событие, кнопка)
+                ExecutorService executor = pollExecutor;
+                if (executor != null && !executor.isShutdown()) {
+                    executor.execute(() -> refreshMessages(account));
                 }
-            } catch (Exception e) {
-                System.err.println("Error refreshing messages: " + e.getMessage());
-                e.printStackTrace();
             }
-        } else {
-            System.err.println("No current account - cannot refresh messages");
         }
 
-        return null;
+        return result;
     }
 
-    private void startMessagePolling() {
-        if (scheduler != null && !scheduler.isShutdown()) {
-            scheduler.shutdown();
+    /**
+     * Дописывает в хранилище новые письма, загруженные тела, удаления и обновленный токен
+     */
+    private void persist(EmailAccount account, List<EmailMessage> messages) {
+        if (store == null) {
+            return;
+        }
+        store.saveAccount(account);
+        store.saveMessages(account, messages);
+        store.retainMessages(account, messages);
+    }
+
+    private PollSchedule scheduleFor(EmailAccount account) {
+        return schedules.computeIfAbsent(account.getEmail(), k -> new PollSchedule());
+    }
+
+    /**
+     * Загружает тело письма текущего аккаунта по требованию.
+     * Вызывать не из EDT - выполняется HTTP-запрос.
+     */
+    public String loadMessageBody(EmailMessage message) {
+        EmailAccount account = currentAccount;
+        if (message.isBodyLoaded() || account == null) {
+            return message.getBody();
+        }
+        return loadMessageBody(account, message);
+    }
+
+    public String loadMessageBody(EmailAccount account, EmailMessage message) {
+        if (message.isBodyLoaded()) {
+            return message.getBody();
+        }
+        try {
+            String body = emailAPI.getMessageBody(account, message);
+            if (body != null) {
+                messageIndex.add(account.getEmail(), message);
+                if (store != null) {
+                    store.saveMessages(account, Collections.singletonList(message));
+                }
+            }
+            return body;
+        } catch (Exception e) {
+            log.warn("Error loading message body: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Загружает тела всех писем аккаунта параллельно (например, для экспорта)
+     */
+    public List<EmailMessage> prefetchBodies(EmailAccount account) {
+        List<EmailMessage> messages = account.getMessages();
+        if (messages == null) {
+            return null;
         }
+        emailAPI.fetchBodies(account, messages);
+        messageIndex.addAll(account.getEmail(), messages);
+        if (store != null) {
+            store.saveMessages(account, messages);
+        }
+        return messages;
+    }
+
+    /**
+     * Удаляет письмо на сервере и из списка сообщений аккаунта
+     */
+    public boolean deleteMessage(EmailAccount account, EmailMessage message) {
+        if (!emailAPI.deleteMessage(account, message)) {
+            return false;
+        }
+        List<EmailMessage> current = account.getMessages();
+        if (current != null) {
+            List<EmailMessage> remaining = new ArrayList<>(current);
+            remaining.remove(message);
+            account.setMessages(remaining);
+            messageIndex.remove(account.getEmail(), message.getId());
+            if (store != null) {
+                store.retainMessages(account, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ждет первое письмо, подходящее под условие. Уже полученные письма проверяются
+     * сразу, новые - как только их принесет синхронизация (push или опрос); пока
+     * кто-то ждет, ящик синхронизируется сразу и опрашивается в частом режиме.
+     * По таймауту future завершается с {@link java.util.concurrent.TimeoutException}.
+     */
+    public CompletableFuture<EmailMessage> awaitMessage(EmailAccount account, Predicate<EmailMessage> predicate,
+                                                        Duration timeout) {
+        MessageWaiter waiter = new MessageWaiter(predicate);
+        List<MessageWaiter> accountWaiters = waiters.computeIfAbsent(account.getEmail(), k -> new CopyOnWriteArrayList<>());
+        // Регистрируемся до проверки текущих писем, чтобы не пропустить синхронизацию между ними
+        accountWaiters.add(waiter);
+        waiter.future.whenComplete((message, error) -> accountWaiters.remove(waiter));
+
+        List<EmailMessage> current = account.getMessages();
+        if (current != null) {
+            waiter.offer(current);
+        }
+        if (!waiter.future.isDone()) {
+            waiter.future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            scheduleFor(account).markActive();
+            // Синхронизируем сразу; в разовом режиме отсюда начинается опрос ящика
+            startMessagePolling();
+            schedulePoll(account, 0);
+        }
+        return waiter.future;
+    }
 
-        scheduler = Executors.newScheduledThreadPool(1);
-        scheduler.scheduleAtFixedRate(() -> {
-            if (currentAccount != null) {
-                List<EmailMessage> newMessages = refreshMessages();
-                if (messageListener != null && newMessages != null) {
-                    messageListener.onMessagesUpdated(newMessages);
+    /**
+     * Одноразовый код и ссылка подтверждения из письма (тело загружается при необходимости)
+     */
+    public MessageExtractor.Extraction extract(EmailAccount account, EmailMessage message) {
+        loadMessageBody(account, message);
+        return extractor.extract(account.getEmail(), message);
+    }
+
+    /**
+     * Проверяет ожидающих только на письмах, которых не было в прошлой синхронизации
+     */
+    private void notifyWaiters(EmailAccount account, List<EmailMessage> previous, List<EmailMessage> messages) {
+        List<MessageWaiter> accountWaiters = waiters.get(account.getEmail());
+        if (accountWaiters == null || accountWaiters.isEmpty()) {
+            return;
+        }
+        List<EmailMessage> added = messages;
+        if (previous != null && !previous.isEmpty()) {
+            Set<String> known = new HashSet<>();
+            for (EmailMessage message : previous) {
+                known.add(message.getId());
+            }
+            added = new ArrayList<>();
+            for (EmailMessage message : messages) {
+                if (!known.contains(message.getId())) {
+                    added.add(message);
                 }
             }
-        }, 0, 15, TimeUnit.SECONDS); // Проверка каждые 15 секунд
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        for (MessageWaiter waiter : accountWaiters) {
+            waiter.offer(added);
+        }
+    }
+
+    /**
+     * Письма аккаунта, подходящие под поисковый запрос, в исходном порядке.
+     * Поиск идет по индексу, поэтому его можно вызывать на каждое нажатие клавиши.
+     * Текст письма ищется, только если тело уже загружено; у остальных писем - тема и отправитель.
+     */
+    public List<EmailMessage> searchMessages(EmailAccount account, String query) {
+        List<EmailMessage> messages = account.getMessages();
+        Set<String> ids = messageIndex.search(account.getEmail(), query);
+        if (messages == null || ids == null) {
+            return messages;
+        }
+        List<EmailMessage> result = new ArrayList<>(Math.min(ids.size(), messages.size()));
+        for (EmailMessage message : messages) {
+            if (ids.contains(message.getId())) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    public void setEagerBodyFetch(boolean eagerBodyFetch) {
+        this.eagerBodyFetch = eagerBodyFetch;
+    }
+
+    /**
+     * Подписывается на события ящика. Пока поток подключен, ящик не опрашивается;
+     * при обрыве опрос возобновляется, а подписка переоткрывается с растущей задержкой.
+     */
+    private void startPush(EmailAccount account) {
+        String email = account.getEmail();
+        SseSubscription subscription = emailAPI.subscribe(account, new SseSubscription.Listener() {
+            @Override
+            public void onOpen() {
+                log.info("Push stream connected for: " + email);
+                reconnectAttempts.remove(email);
+                // Догоняем письма, пришедшие пока потока не было
+                pollExecutor.execute(() -> refreshMessages(account));
+            }
+
+            @Override
+            public void onEvent(String data) {
+                pollExecutor.execute(() -> refreshMessages(account));
+            }
+
+            @Override
+            public void onClosed(Throwable error) {
+                subscriptions.remove(email);
+                log.warn("Push stream dropped for " + email + ", falling back to polling" +
+                        (error != null ? ": " + error.getMessage() : ""));
+                // Следующий опрос был отложен на время потока - опрашиваем сразу
+                schedulePoll(account, 0);
+                scheduleReconnect(account);
+            }
+        });
+
+        if (subscription != null) {
+            subscriptions.put(email, subscription);
+        }
+    }
+
+    private synchronized void scheduleReconnect(EmailAccount account) {
+        String email = account.getEmail();
+        if (scheduler == null || scheduler.isShutdown() || !accounts.containsKey(email)) {
+            return;
+        }
+        int attempt = reconnectAttempts.merge(email, 1, Integer::sum);
+        long delay = Math.min(PUSH_RECONNECT_MAX_SECONDS, PUSH_RECONNECT_MIN_SECONDS << Math.min(attempt - 1, 10));
+        scheduler.schedule(() -> {
+            if (accounts.containsKey(email) && !subscriptions.containsKey(email)) {
+                startPush(account);
+            }
+        }, delay, TimeUnit.SECONDS);
+    }
+
+    private boolean isPushConnected(EmailAccount account) {
+        SseSubscription subscription = subscriptions.get(account.getEmail());
+        return subscription != null && subscription.isConnected();
+    }
+
+    private synchronized void startMessagePolling() {
+        if (scheduler != null && !scheduler.isShutdown()) {
+            return; // Опрос уже запущен
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        // Фоновые опросы уступают сервису место для интерактивных запросов
+        ThreadFactory threads = Executors.defaultThreadFactory();
+        pollExecutor = Executors.newFixedThreadPool(POLL_THREADS, r -> threads.newThread(() -> {
+            RequestPriority.setCurrent(RequestPriority.BACKGROUND);
+            r.run();
+        }));
+    }
+
+    /**
+     * Планирует следующий опрос ящика. Новый опрос планируется только после
+     * завершения предыдущего, поэтому медленный сервис не накапливает очередь запросов.
+     */
+    private synchronized void schedulePoll(EmailAccount account, long delayMillis) {
+        if (scheduler == null || scheduler.isShutdown() || !accounts.containsKey(account.getEmail())) {
+            return;
+        }
+        // Уже запланированный опрос заменяется новым
+        PendingPoll poll = new PendingPoll(account);
+        PendingPoll previous = pendingPolls.put(account.getEmail(), poll);
+        if (previous != null) {
+            previous.future.cancel(false);
+        }
+        poll.future = scheduler.schedule(() -> pollExecutor.execute(poll), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Планирует следующий опрос, если выполненный опрос не был заменен или отменен
+     */
+    private synchronized void scheduleNextPoll(PendingPoll poll, long delayMillis) {
+        if (pendingPolls.get(poll.account.getEmail()) == poll) {
+            schedulePoll(poll.account, delayMillis);
+        }
+    }
+
+    private synchronized void cancelPoll(EmailAccount account) {
+        PendingPoll poll = pendingPolls.remove(account.getEmail());
+        if (poll != null) {
+            poll.future.cancel(false);
+        }
     }
 
     public void setMessageListener(MessageListener listener) {
         this.messageListener = listener;
     }
 
-    public void stopService() {
+    public synchronized void stopService() {
+        if (accountPool != null) {
+            accountPool.shutdown();
+        }
+        // Сначала останавливаем опрос: закрытие потоков событий не должно планировать новые опросы
         if (scheduler != null && !scheduler.isShutdown()) {
             scheduler.shutdown();
         }
+        if (pollExecutor != null && !pollExecutor.isShutdown()) {
+            pollExecutor.shutdown();
+        }
+        for (SseSubscription subscription : subscriptions.values()) {
+            subscription.close();
+        }
+        subscriptions.clear();
+        if (store != null) {
+            store.close();
+        }
     }
 
     public EmailAccount getCurrentAccount() {
@@ -90,7 +630,63 @@ public class EmailService {
         return false; // Больше нет симуляции
     }
 
+    /**
+     * Запланированный опрос ящика. Выполняется, только пока он остается последним
+     * запланированным, поэтому перепланирование не создает второй цепочки опросов.
+     */
+    private final class PendingPoll implements Runnable {
+        final EmailAccount account;
+        volatile ScheduledFuture<?> future;
+
+        PendingPoll(EmailAccount account) {
+            this.account = account;
+        }
+
+        @Override
+        public void run() {
+            if (pendingPolls.get(account.getEmail()) != this) {
+                return; // заменен новым опросом или аккаунт удален
+            }
+            boolean pushConnected = isPushConnected(account);
+            if (!pushConnected) {
+                refreshMessages(account);
+            }
+            scheduleNextPoll(this, scheduleFor(account).nextDelayMillis(pushConnected));
+        }
+    }
+
+    private static final class MessageWaiter {
+        final Predicate<EmailMessage> predicate;
+        final CompletableFuture<EmailMessage> future = new CompletableFuture<>();
+
+        MessageWaiter(Predicate<EmailMessage> predicate) {
+            this.predicate = predicate;
+        }
+
+        void offer(List<EmailMessage> messages) {
+            try {
+                for (EmailMessage message : messages) {
+                    if (future.isDone()) {
+                        return;
+                    }
+                    if (predicate.test(message)) {
+                        future.complete(message);
+                        return;
+                    }
+                }
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
     public interface MessageListener {
-        void onMessagesUpdated(List<EmailMessage> messages);
+        void onMessagesUpdated(EmailAccount account, List<EmailMessage> messages);
+
+        /**
+         * Ящик удален и больше не опрашивается
+         */
+        default void onAccountRemoved(EmailAccount account) {
+        }
     }
-}
\ No newline at end of file
+}
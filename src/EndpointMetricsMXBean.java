@@ -0,0 +1,24 @@
+/**
+ * Метрики HTTP-запросов к одной конечной точке сервиса (задержки - в миллисекундах)
+ */
+public interface EndpointMetricsMXBean {
+    String getProvider();
+
+    String getEndpoint();
+
+    long getRequests();
+
+    long getFailures();
+
+    long getBytesIn();
+
+    HistogramSnapshot getDns();
+
+    HistogramSnapshot getConnect();
+
+    HistogramSnapshot getTls();
+
+    HistogramSnapshot getTimeToFirstByte();
+
+    HistogramSnapshot getTotal();
+}
@@ -0,0 +1,239 @@
+import com.google.gson.stream.JsonReader;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * GuerrillaMail API - согласно документации https://www.guerrillamail.com/GuerrillaMailAPI.html
+ */
+public class GuerrillaMailProvider implements MailProvider {
+    private static final Log log = Log.get(GuerrillaMailProvider.class);
+
+    public static final String NAME = "guerrillamail";
+
+    private static final String API_URL = "https://api.guerrillamail.com/ajax.php";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getPriority() {
+        return 20; // резервный сервис
+    }
+
+    @Override
+    public List<String> getHosts() {
+        return Collections.singletonList("api.guerrillamail.com");
+    }
+
+    @Override
+    public Duration getRetention() {
+        return Duration.ofHours(1); // адрес GuerrillaMail живет 60 минут
+    }
+
+    @Override
+    public EmailAccount createAccount() throws IOException {
+        // Согласно API: f=get_email_address - получаем или создаем email
+        Request request = new Request.Builder()
+                .url(API_URL + "?f=get_email_address")
+                .header("User-Agent", "TemporaryEmailClient/1.0")
+                .build();
+
+        try (Response response = TempEmailAPI.httpClient().newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new ProviderException(NAME, response.code(), "account creation failed");
+            }
+
+            // Согласно API docs, возвращает email_addr и sid_token
+            String[] emailAndSid = JsonStreams.read(response.body(), ADDRESS_ADAPTER);
+            String email = emailAndSid[0];
+            String sid = emailAndSid[1];
+            if (email == null || sid == null) {
+                throw new ProviderException(NAME, response.code(), "unexpected account response");
+            }
+
+            // SID хранится в сессии аккаунта как идентификатор сессии
+            MailSession session = new MailSession(NAME, email, sid, null);
+            return new EmailAccount(email, "", session);
+        }
+    }
+
+    @Override
+    public void deleteAccount(MailSession session) throws IOException {
+        // Согласно API docs: f=forget_me забывает адрес, привязанный к сессии
+        Request request = new Request.Builder()
+                .url(API_URL + "?f=forget_me&email_addr=" + session.getAddress() + "&sid_token=" + session.getToken())
+                .header("User-Agent", "TemporaryEmailClient/1.0")
+                .build();
+
+        try (Response response = TempEmailAPI.httpClient().newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new ProviderException(NAME, response.code(), "forget_me failed");
+            }
+        }
+    }
+
+    @Override
+    public List<EmailMessage> listMessages(MailSession session) throws IOException {
+        // Согласно API docs: f=get_email_list для получения списка сообщений
+        Request request = new Request.Builder()
+                .url(API_URL + "?f=get_email_list&offset=0&sid_token=" + session.getToken())
+                .header("User-Agent", "TemporaryEmailClient/1.0")
+                .tag(CachePolicy.class, CachePolicy.REVALIDATE)
+                .build();
+
+        try (Response response = TempEmailAPI.httpClient().newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new ProviderException(NAME, response.code(), "messages request failed");
+            }
+
+            // Согласно API, возвращает список сообщений в поле "list"
+            List<EmailMessage> messages = JsonStreams.read(response.body(), MESSAGE_LIST_ADAPTER);
+            log.debug(() -> "GuerrillaMail API returned " + messages.size() + " messages");
+            return messages;
+        }
+    }
+
+    @Override
+    public Request buildBodyRequest(MailSession session, String messageId) {
+        // Согласно API docs: f=fetch_email для получения полного сообщения
+        return new Request.Builder()
+                .url(API_URL + "?f=fetch_email&email_id=" + messageId + "&sid_token=" + session.getToken())
+                .header("User-Agent", "TemporaryEmailClient/1.0")
+                .tag(CachePolicy.class, CachePolicy.IMMUTABLE)
+                .build();
+    }
+
+    @Override
+    public String parseBody(Response response) throws IOException {
+        return JsonStreams.read(response.body(), BODY_ADAPTER);
+    }
+
+    @Override
+    public boolean deleteMessage(MailSession session, String messageId) throws IOException {
+        // Согласно API docs: f=del_email принимает массив email_ids[]
+        Request request = new Request.Builder()
+                .url(API_URL + "?f=del_email&email_ids[]=" + messageId + "&sid_token=" + session.getToken())
+                .header("User-Agent", "TemporaryEmailClient/1.0")
+                .build();
+
+        try (Response response = TempEmailAPI.httpClient().newCall(request).execute()) {
+            return response.isSuccessful();
+        }
+    }
+
+    // Потоковые адаптеры ответов GuerrillaMail: читают только нужные поля, остальное пропускают
+
+    /**
+     * Ответ f=get_email_address: [email_addr, sid_token]
+     */
+    static final JsonStreams.ResponseReader<String[]> ADDRESS_ADAPTER = new JsonStreams.ResponseReader<String[]>() {
+        @Override
+        public String[] read(JsonReader in) throws IOException {
+            String[] result = new String[2];
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "email_addr": result[0] = JsonStreams.nextStringOrNull(in); break;
+                    case "sid_token": result[1] = JsonStreams.nextStringOrNull(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return result;
+        }
+    };
+
+    /**
+     * Ответ f=get_email_list: заголовки писем из поля list, тело не заполняется
+     */
+    static final JsonStreams.ResponseReader<List<EmailMessage>> MESSAGE_LIST_ADAPTER = new JsonStreams.ResponseReader<List<EmailMessage>>() {
+        @Override
+        public List<EmailMessage> read(JsonReader in) throws IOException {
+            List<EmailMessage> messages = new ArrayList<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!"list".equals(in.nextName())) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginArray();
+                while (in.hasNext()) {
+                    messages.add(readSummary(in));
+                }
+                in.endArray();
+            }
+            in.endObject();
+            return messages;
+        }
+
+        private EmailMessage readSummary(JsonReader in) throws IOException {
+            String id = null;
+            String from = null;
+            String subject = null;
+            long timestamp = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "mail_id": id = JsonStreams.nextStringOrNull(in); break;
+                    case "mail_from": from = JsonStreams.nextStringOrNull(in); break;
+                    case "mail_subject": subject = JsonStreams.nextStringOrNull(in); break;
+                    case "mail_timestamp": timestamp = parseTimestamp(JsonStreams.nextStringOrNull(in)); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+
+            // Время в формате timestamp; тело письма загружается лениво - при первом просмотре
+            Date date = timestamp > 0 ? new Date(timestamp * 1000) : new Date();
+            return new EmailMessage(id, from, subject != null ? subject : "No Subject", null, date);
+        }
+
+        private long parseTimestamp(String value) {
+            try {
+                return value != null ? Long.parseLong(value) : 0;
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    };
+
+    /**
+     * Ответ f=fetch_email: mail_body, а если его нет - mail_excerpt
+     */
+    static final JsonStreams.ResponseReader<String> BODY_ADAPTER = new JsonStreams.ResponseReader<String>() {
+        @Override
+        public String read(JsonReader in) throws IOException {
+            String body = null;
+            String excerpt = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "mail_body": body = JsonStreams.nextStringOrNull(in); break;
+                    case "mail_excerpt": excerpt = JsonStreams.nextStringOrNull(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+
+            // Согласно API, текст сообщения может быть в разных полях
+            if (body != null) {
+                return body;
+            } else if (excerpt != null) {
+                return excerpt;
+            } else {
+                return "No message content";
+            }
+        }
+    };
+}
@@ -0,0 +1,261 @@
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Консольный режим без Swing - для CI и серверов без дисплея.
+ * Использует те же EmailService и TempEmailAPI, что и окно, но не загружает AWT.
+ *
+ * Результаты печатаются в stdout, служебный вывод сервиса - в stderr.
+ */
+public class HeadlessMain {
+    private static final String USAGE =
+            "Использование: java -cp temp-email-service.jar HeadlessMain <команда>\n" +
+            "  create [-n N]                          создать N ящиков и вывести адреса\n" +
+            "  list <адрес>                           вывести письма ящика\n" +
+            "  read <адрес> <id>                      вывести текст письма\n" +
+            "  wait [<адрес>] [--timeout СЕК] [--from REGEX] [--subject REGEX]\n" +
+            "          [--code | --link]              дождаться письма (без адреса - в новом ящике);\n" +
+            "                                         --code/--link - вывести только код или ссылку\n" +
+            "  serve [--port N]                       запустить HTTP-шлюз (InboxGateway) на 127.0.0.1\n" +
+            "Коды выхода: 0 - успех, 1 - ошибка, 2 - неверные аргументы, 3 - письмо не дождались";
+
+    private final PrintStream out;
+    private final EmailService emailService;
+    private final BodyRenderer bodyRenderer = new BodyRenderer();
+
+    private HeadlessMain(PrintStream out, boolean serve) {
+        this.out = out;
+        // Разовым командам не нужны ни остальные сохраненные ящики, ни фоновый опрос, ни пул:
+        // так параллельные запуски не мешают друг другу и делят общее хранилище
+        this.emailService = new EmailService(serve);
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        // Отделяем результаты от служебного вывода
+        PrintStream out = System.out;
+        System.setOut(System.err);
+
+        int code;
+        HeadlessMain main = null;
+        try {
+            main = new HeadlessMain(out, args[0].equals("serve"));
+            code = main.run(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            code = 2;
+        } catch (Exception e) {
+            System.err.println("Ошибка: " + e.getMessage());
+            code = 1;
+        } finally {
+            if (main != null) {
+                main.emailService.stopService();
+            }
+            out.flush();
+        }
+        System.exit(code);
+    }
+
+    private int run(String[] args) throws Exception {
+        switch (args[0]) {
+            case "create":
+                return create(args);
+            case "list":
+                return list(requireArg(args, 1, "адрес"));
+            case "read":
+                return read(requireArg(args, 1, "адрес"), requireArg(args, 2, "id"));
+            case "wait":
+                return await(args);
+            case "serve":
+                return serve(args);
+            default:
+                throw new IllegalArgumentException("Неизвестная команда: " + args[0]);
+        }
+    }
+
+    private int serve(String[] args) throws Exception {
+        int port = Integer.getInteger("tempemail.gateway.port", 8025);
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Неизвестный аргумент: " + args[i]);
+            }
+        }
+
+        InboxGateway gateway = new InboxGateway(emailService, new InetSocketAddress("127.0.0.1", port));
+        gateway.start();
+        out.println("http://127.0.0.1:" + gateway.getPort());
+        out.flush();
+
+        // Работает до остановки процесса
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            gateway.stop();
+            emailService.stopService();
+            stopped.countDown();
+        }));
+        stopped.await();
+        return 0;
+    }
+
+    private int create(String[] args) {
+        int count = 1;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("-n") && i + 1 < args.length) {
+                count = Integer.parseInt(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Неизвестный аргумент: " + args[i]);
+            }
+        }
+
+        int created = 0;
+        for (int i = 0; i < count; i++) {
+            EmailAccount account = emailService.createNewEmail();
+            if (account != null) {
+                out.println(account.getEmail());
+                created++;
+            }
+        }
+        return created == count ? 0 : 1;
+    }
+
+    private int list(String address) {
+        EmailAccount account = findAccount(address);
+        List<EmailMessage> messages = emailService.refreshMessages(account);
+        if (messages == null) {
+            return 1;
+        }
+        for (EmailMessage message : messages) {
+            printSummary(message);
+        }
+        return 0;
+    }
+
+    private int read(String address, String id) {
+        EmailAccount account = findAccount(address);
+        List<EmailMessage> messages = emailService.refreshMessages(account);
+        if (messages == null) {
+            return 1;
+        }
+        for (EmailMessage message : messages) {
+            if (message.getId().equals(id)) {
+                return printMessage(account, message) ? 0 : 1;
+            }
+        }
+        System.err.println("Письмо не найдено: " + id);
+        return 1;
+    }
+
+    private int await(String[] args) throws Exception {
+        String address = null;
+        long timeoutSeconds = 120;
+        Pattern from = null;
+        Pattern subject = null;
+        Output output = Output.MESSAGE;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--code": output = Output.CODE; break;
+                case "--link": output = Output.LINK; break;
+                case "--timeout": timeoutSeconds = Long.parseLong(requireArg(args, ++i, "секунды")); break;
+                case "--from": from = Pattern.compile(requireArg(args, ++i, "REGEX")); break;
+                case "--subject": subject = Pattern.compile(requireArg(args, ++i, "REGEX")); break;
+                default:
+                    if (args[i].startsWith("--") || address != null) {
+                        throw new IllegalArgumentException("Неизвестный аргумент: " + args[i]);
+                    }
+                    address = args[i];
+            }
+        }
+
+        EmailAccount account;
+        if (address != null) {
+            account = findAccount(address);
+        } else {
+            account = emailService.createNewEmail();
+            if (account == null) {
+                return 1;
+            }
+            // Адрес нужен тесту раньше письма
+            out.println(account.getEmail());
+            out.flush();
+        }
+
+        Pattern fromPattern = from;
+        Pattern subjectPattern = subject;
+        EmailMessage message;
+        try {
+            message = emailService.awaitMessage(account,
+                    m -> matches(fromPattern, m.getFrom()) && matches(subjectPattern, m.getSubject()),
+                    Duration.ofSeconds(timeoutSeconds)).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                System.err.println("Письмо не пришло за " + timeoutSeconds + " с");
+                return 3;
+            }
+            throw e;
+        }
+
+        if (output == Output.MESSAGE) {
+            return printMessage(account, message) ? 0 : 1;
+        }
+        MessageExtractor.Extraction extraction = emailService.extract(account, message);
+        String value = output == Output.CODE ? extraction.getCode() : extraction.getVerificationLink();
+        if (value == null) {
+            System.err.println("В письме не найден" + (output == Output.CODE ? " код" : "а ссылка подтверждения"));
+            return 1;
+        }
+        out.println(value);
+        return 0;
+    }
+
+    // Что выводить по дождавшемуся письму
+    private enum Output { MESSAGE, CODE, LINK }
+
+    private boolean printMessage(EmailAccount account, EmailMessage message) {
+        printSummary(message);
+        if (emailService.loadMessageBody(account, message) == null) {
+            System.err.println("Не удалось загрузить текст письма");
+            return false;
+        }
+        out.println();
+        out.println(bodyRenderer.render(account.getEmail(), message));
+        return true;
+    }
+
+    private void printSummary(EmailMessage message) {
+        out.println(message.getId() + "\t" + IsoDates.format(message.getDate()) + "\t" +
+                message.getFrom() + "\t" + message.getSubject());
+    }
+
+    private EmailAccount findAccount(String address) {
+        EmailAccount account = emailService.openAccount(address);
+        if (account == null) {
+            throw new IllegalArgumentException("Ящик не найден в локальном хранилище: " + address);
+        }
+        return account;
+    }
+
+    private static boolean matches(Pattern pattern, String value) {
+        return pattern == null || (value != null && pattern.matcher(value).find());
+    }
+
+    private static String requireArg(String[] args, int index, String name) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Не указан аргумент: " + name);
+        }
+        return args[index];
+    }
+}
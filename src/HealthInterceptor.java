@@ -0,0 +1,68 @@
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+
+/**
+ * Перехватчик HTTP-клиента, который передает в {@link ProviderHealth}
+ * результат и задержку каждого запроса к известным хостам сервисов.
+ * Ответы из кэша без обращения к сети не учитываются, как и запросы, которые
+ * не дошли до сервиса: отказ локальной квоты, прерывание потока и отмена вызова.
+ */
+public class HealthInterceptor implements Interceptor {
+    private final ProviderHealth health;
+    private final Map<String, String> providersByHost;
+
+    public HealthInterceptor(ProviderHealth health, Map<String, String> providersByHost) {
+        this.health = health;
+        this.providersByHost = providersByHost;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        String provider = providersByHost.get(chain.request().url().host());
+        if (provider == null) {
+            return chain.proceed(chain.request());
+        }
+
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException e) {
+            if (isProviderFailure(chain, e)) {
+                health.recordFailure(provider, elapsedMillis(start));
+            }
+            throw e;
+        }
+
+        if (response.networkResponse() != null) {
+            // 429 и 5xx - проблема сервиса; прочие 4xx (например, 404) - нет
+            int code = response.code();
+            if (code == 429 || code >= 500) {
+                health.recordFailure(provider, elapsedMillis(start));
+            } else {
+                health.recordSuccess(provider, elapsedMillis(start));
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Сбой сети или сервиса, а не наш собственный отказ: тайм-аут сокета - сбой,
+     * прерывание ожидания квоты и отмена вызова (например, закрытым ящиком) - нет
+     */
+    private static boolean isProviderFailure(Chain chain, IOException e) {
+        if (e instanceof RateLimitedException || chain.call().isCanceled()) {
+            return false;
+        }
+        return !(e instanceof InterruptedIOException) || e instanceof SocketTimeoutException;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
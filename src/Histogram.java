@@ -0,0 +1,90 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасная гистограмма с фиксированными границами корзин.
+ * Запись - один атомарный инкремент без блокировок; перцентили оцениваются
+ * по верхней границе корзины, этого достаточно, чтобы видеть порядок величин.
+ */
+public class Histogram {
+    // Задержки в микросекундах: от 100 мкс до минуты
+    private static final long[] LATENCY_MICROS = {
+            100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000,
+            500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000, 30_000_000, 60_000_000
+    };
+    // Количества (например, писем за опрос)
+    private static final long[] COUNTS = {0, 1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000};
+
+    private final long[] bounds;
+    private final double unit;
+    private final AtomicLongArray buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    private Histogram(long[] bounds, double unit) {
+        this.bounds = bounds;
+        this.unit = unit;
+        this.buckets = new AtomicLongArray(bounds.length + 1);
+    }
+
+    /**
+     * Гистограмма задержек: записывается в наносекундах, отображается в миллисекундах
+     */
+    public static Histogram latency() {
+        return new Histogram(LATENCY_MICROS, 1000.0);
+    }
+
+    public static Histogram counts() {
+        return new Histogram(COUNTS, 1.0);
+    }
+
+    public void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+
+    public void record(long value) {
+        int index = 0;
+        while (index < bounds.length && value > bounds[index]) {
+            index++;
+        }
+        buckets.incrementAndGet(index);
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public HistogramSnapshot snapshot() {
+        long total = 0;
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        double mean = total == 0 ? 0 : sum.sum() / (double) count.sum() / unit;
+        return new HistogramSnapshot(total, mean,
+                percentile(counts, total, 0.50), percentile(counts, total, 0.95),
+                percentile(counts, total, 0.99), max.get() / unit);
+    }
+
+    private double percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // Последняя корзина не ограничена сверху - берем максимум
+                return i < bounds.length ? Math.min(bounds[i], max.get()) / unit : max.get() / unit;
+            }
+        }
+        return max.get() / unit;
+    }
+}
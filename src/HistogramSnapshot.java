@@ -0,0 +1,32 @@
+/**
+ * Снимок гистограммы для JMX (в консоли отображается как составной атрибут)
+ */
+public class HistogramSnapshot {
+    private final long count;
+    private final double mean;
+    private final double p50;
+    private final double p95;
+    private final double p99;
+    private final double max;
+
+    public HistogramSnapshot(long count, double mean, double p50, double p95, double p99, double max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public long getCount() { return count; }
+    public double getMean() { return mean; }
+    public double getP50() { return p50; }
+    public double getP95() { return p95; }
+    public double getP99() { return p99; }
+    public double getMax() { return max; }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.1f p50=%.1f p95=%.1f p99=%.1f max=%.1f", count, mean, p50, p95, p99, max);
+    }
+}
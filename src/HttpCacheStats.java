@@ -0,0 +1,32 @@
+/**
+ * Снимок счетчиков HTTP-кэша: память, диск и сеть
+ */
+public final class HttpCacheStats {
+    private final long memoryHits;
+    private final long memoryMisses;
+    private final long diskHits;
+    private final long networkRequests;
+    private final long conditionalHits;
+
+    public HttpCacheStats(long memoryHits, long memoryMisses, long diskHits,
+                          long networkRequests, long conditionalHits) {
+        this.memoryHits = memoryHits;
+        this.memoryMisses = memoryMisses;
+        this.diskHits = diskHits;
+        this.networkRequests = networkRequests;
+        this.conditionalHits = conditionalHits;
+    }
+
+    public long getMemoryHits() { return memoryHits; }
+    public long getMemoryMisses() { return memoryMisses; }
+    public long getDiskHits() { return diskHits; }
+    public long getNetworkRequests() { return networkRequests; }
+    /** Ответы 304: список не изменился, тело не передавалось */
+    public long getConditionalHits() { return conditionalHits; }
+
+    @Override
+    public String toString() {
+        return String.format("memory %d/%d hit, disk %d hit, network %d (304: %d)",
+                memoryHits, memoryHits + memoryMisses, diskHits, networkRequests, conditionalHits);
+    }
+}
@@ -0,0 +1,134 @@
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Слушатель событий OkHttp: измеряет фазы каждого запроса (DNS, соединение,
+ * TLS, время до первого байта, полное время) и принятые байты и пишет их
+ * в метрики конечной точки ({@link Metrics#endpoint}). Экземпляр создается
+ * на каждый запрос, поэтому поля не требуют синхронизации.
+ */
+public class HttpMetricsListener extends EventListener {
+    // Сегменты пути, похожие на идентификаторы, заменяются на {id}
+    private static final Pattern ID_SEGMENT = Pattern.compile("[0-9a-fA-F-]{8,}|\\d+|[^/]*@[^/]*");
+
+    private final Metrics.Endpoint metrics;
+    private long callStart;
+    private long dnsStart;
+    private long connectStart;
+    private long secureConnectStart;
+    private long requestStart;
+
+    private HttpMetricsListener(Metrics.Endpoint metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Фабрика для OkHttpClient; хосты сопоставляются с сервисами по общей карте TempEmailAPI
+     */
+    public static EventListener.Factory factory(Map<String, String> providersByHost) {
+        return call -> {
+            HttpUrl url = call.request().url();
+            String provider = providersByHost.getOrDefault(url.host(), url.host());
+            return new HttpMetricsListener(Metrics.endpoint(provider, endpointName(call.request().method(), url)));
+        };
+    }
+
+    /**
+     * "GET /messages/{id}"; для API с одной точкой входа (GuerrillaMail) добавляется параметр f
+     */
+    static String endpointName(String method, HttpUrl url) {
+        StringBuilder name = new StringBuilder(method).append(' ');
+        for (String segment : url.pathSegments()) {
+            name.append('/').append(ID_SEGMENT.matcher(segment).matches() ? "{id}" : segment);
+        }
+        String function = url.queryParameter("f");
+        if (function != null) {
+            name.append("?f=").append(function);
+        }
+        return name.toString();
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+        metrics.requests.increment();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        metrics.dns.recordNanos(System.nanoTime() - dnsStart);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        metrics.tls.recordNanos(System.nanoTime() - secureConnectStart);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        metrics.connect.recordNanos(System.nanoTime() - connectStart);
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        // Время до первого байта ответа - от начала отправки запроса по уже готовому соединению
+        if (requestStart != 0) {
+            metrics.timeToFirstByte.recordNanos(System.nanoTime() - requestStart);
+        }
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        if (response.code() == 429 || response.code() >= 500) {
+            metrics.failures.increment();
+        }
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        metrics.bytesIn.add(byteCount);
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        metrics.total.recordNanos(System.nanoTime() - callStart);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        metrics.failures.increment();
+        metrics.total.recordNanos(System.nanoTime() - callStart);
+    }
+}
@@ -0,0 +1,294 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Локальный HTTP-шлюз к EmailService для интеграционных тестов.
+ * Все клиенты работают с одним общим сервисом (и его пулом готовых ящиков).
+ *
+ * <pre>
+ * POST   /inboxes                              создать ящик -> {"address": ...}
+ * GET    /inboxes/{address}/messages           письма ящика (?refresh=true - синхронизировать сейчас)
+ * GET    /inboxes/{address}/messages/{id}      письмо с текстом
+ * GET    /inboxes/{address}/wait               дождаться письма (?timeout=сек&amp;from=regex&amp;subject=regex)
+ * DELETE /inboxes/{address}                    перестать следить за ящиком
+ * </pre>
+ *
+ * Ожидание (long-poll) не занимает поток: ответ отправляется, когда
+ * EmailService.awaitMessage находит письмо или истекает таймаут (204). В ответе
+ * с письмом есть извлеченные одноразовый код (code) и ссылка подтверждения (link).
+ * Если ящик удалили, пока шло ожидание, ответ - 410.
+ */
+public class InboxGateway {
+    private static final Log log = Log.get(InboxGateway.class);
+
+    private static final int THREADS = Integer.getInteger("tempemail.gateway.threads", 32);
+    private static final long MAX_WAIT_SECONDS = Long.getLong("tempemail.gateway.wait.max.seconds", 600);
+
+    private static final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
+    static {
+        // HttpServer отправляет заголовки и тело ответа отдельными пакетами, и с алгоритмом
+        // Нейгла каждый ответ ждет отложенного ACK клиента (~40 мс на запрос)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final EmailService emailService;
+    private final BodyRenderer bodyRenderer = new BodyRenderer();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public InboxGateway(EmailService emailService, InetSocketAddress address) throws IOException {
+        this.emailService = emailService;
+        this.server = HttpServer.create(address, 256);
+        this.executor = Executors.newFixedThreadPool(THREADS);
+        server.setExecutor(executor);
+        server.createContext("/inboxes", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        log.info("Inbox gateway listening on http://" +
+                server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange);
+        } catch (IllegalArgumentException e) {
+            sendJson(exchange, 400, error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Gateway error", e);
+            sendJson(exchange, 500, error(e.getMessage()));
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        // /inboxes[/{address}[/messages[/{id}] | /wait]]
+        String[] parts = exchange.getRequestURI().getRawPath().split("/");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        if (parts.length == 2 && method.equals("POST")) {
+            createInbox(exchange);
+            return;
+        }
+        if (parts.length < 3) {
+            sendJson(exchange, 404, error("not found"));
+            return;
+        }
+
+        EmailAccount account = emailService.getAccount(decode(parts[2]));
+        if (account == null) {
+            sendJson(exchange, 404, error("unknown inbox"));
+        } else if (parts.length == 3 && method.equals("DELETE")) {
+            emailService.removeAccount(account);
+            sendJson(exchange, 200, Collections.singletonMap("removed", account.getEmail()));
+        } else if (parts.length == 4 && parts[3].equals("messages") && method.equals("GET")) {
+            listMessages(exchange, account, Boolean.parseBoolean(query.get("refresh")));
+        } else if (parts.length == 5 && parts[3].equals("messages") && method.equals("GET")) {
+            getMessage(exchange, account, decode(parts[4]));
+        } else if (parts.length == 4 && parts[3].equals("wait") && method.equals("GET")) {
+            waitForMessage(exchange, account, query);
+        } else {
+            sendJson(exchange, 404, error("not found"));
+        }
+    }
+
+    private void createInbox(HttpExchange exchange) throws IOException {
+        EmailAccount account = emailService.createNewEmail();
+        if (account == null) {
+            sendJson(exchange, 503, error("all providers unavailable"));
+            return;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("address", account.getEmail());
+        result.put("provider", account.getSession().getProvider());
+        sendJson(exchange, 201, result);
+    }
+
+    private void listMessages(HttpExchange exchange, EmailAccount account, boolean refresh) throws IOException {
+        List<EmailMessage> messages = refresh ? emailService.refreshMessages(account) : account.getMessages();
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (messages != null) {
+            for (EmailMessage message : messages) {
+                result.add(summary(message));
+            }
+        }
+        sendJson(exchange, 200, result);
+    }
+
+    private void getMessage(HttpExchange exchange, EmailAccount account, String id) throws IOException {
+        EmailMessage message = findMessage(account, id);
+        if (message == null) {
+            sendJson(exchange, 404, error("unknown message"));
+            return;
+        }
+        if (emailService.loadMessageBody(account, message) == null) {
+            sendJson(exchange, 502, error("body unavailable"));
+            return;
+        }
+        sendJson(exchange, 200, full(account, message));
+    }
+
+    private void waitForMessage(HttpExchange exchange, EmailAccount account, Map<String, String> query) {
+        long timeoutSeconds = Math.min(MAX_WAIT_SECONDS, Long.parseLong(query.getOrDefault("timeout", "60")));
+        Pattern from = compile(query.get("from"));
+        Pattern subject = compile(query.get("subject"));
+
+        // Поток сервера не ждет: ответ отправляется, когда future завершится
+        emailService.awaitMessage(account,
+                message -> matches(from, message.getFrom()) && matches(subject, message.getSubject()),
+                Duration.ofSeconds(timeoutSeconds))
+                .whenCompleteAsync((message, error) -> {
+                    try {
+                        if (error == null) {
+                            emailService.loadMessageBody(account, message);
+                            sendJson(exchange, 200, message.isBodyLoaded() ? full(account, message) : summary(message));
+                        } else {
+                            sendWaitError(exchange, account, error);
+                        }
+                    } catch (IOException e) {
+                        // клиент уже отключился
+                    } catch (RuntimeException e) {
+                        log.error("Gateway error", e);
+                        sendQuietly(exchange, 500, error(e.getMessage()));
+                    } finally {
+                        exchange.close();
+                    }
+                }, executor);
+    }
+
+    /**
+     * Ответ на ожидание, завершившееся без письма: 204 только по таймауту,
+     * 410 - ящик удалили во время ожидания, прочие сбои - 500
+     */
+    private static void sendWaitError(HttpExchange exchange, EmailAccount account, Throwable error) throws IOException {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            exchange.sendResponseHeaders(204, -1); // не дождались
+        } else if (cause instanceof CancellationException) {
+            sendJson(exchange, 410, error("inbox removed"));
+        } else {
+            log.warn("Wait for " + account.getEmail() + " failed: " + cause);
+            sendJson(exchange, 500, error(String.valueOf(cause.getMessage())));
+        }
+    }
+
+    /**
+     * Отправляет ответ, если заголовки еще не ушли; клиент мог уже отключиться
+     */
+    private static void sendQuietly(HttpExchange exchange, int status, Object body) {
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        try {
+            sendJson(exchange, status, body);
+        } catch (IOException e) {
+            // клиент уже отключился
+        }
+    }
+
+    private EmailMessage findMessage(EmailAccount account, String id) {
+        List<EmailMessage> messages = account.getMessages();
+        if (messages != null) {
+            for (EmailMessage message : messages) {
+                if (message.getId().equals(id)) {
+                    return message;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Object> summary(EmailMessage message) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", message.getId());
+        result.put("from", message.getFrom());
+        result.put("subject", message.getSubject());
+        result.put("date", IsoDates.format(message.getDate()));
+        return result;
+    }
+
+    private Map<String, Object> full(EmailAccount account, EmailMessage message) {
+        Map<String, Object> result = summary(message);
+        MessageExtractor.Extraction extraction = emailService.extract(account, message);
+        result.put("code", extraction.getCode());
+        result.put("link", extraction.getVerificationLink());
+        result.put("text", bodyRenderer.render(account.getEmail(), message));
+        result.put("body", message.getBody());
+        return result;
+    }
+
+    private static Map<String, Object> error(String message) {
+        return Collections.singletonMap("error", message);
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> result = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return result;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                result.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            } else {
+                result.put(decode(pair), "");
+            }
+        }
+        return result;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static boolean matches(Pattern pattern, String value) {
+        return pattern == null || (value != null && pattern.matcher(value).find());
+    }
+
+    private static Pattern compile(String regex) {
+        return regex == null || regex.isEmpty() ? null : Pattern.compile(regex);
+    }
+}
@@ -0,0 +1,45 @@
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * Разбор дат ISO 8601 общим потокобезопасным форматтером
+ * (вместо нового SimpleDateFormat на каждый вызов)
+ */
+public final class IsoDates {
+    private static final Log log = Log.get(IsoDates.class);
+
+    // Принимает и "2024-01-15T10:30:00.000Z", и "2024-01-15T10:30:00+00:00"
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+
+    private IsoDates() {
+    }
+
+    /**
+     * Возвращает разобранную дату или текущую, если строку разобрать не удалось
+     */
+    public static Date parse(String dateStr) {
+        if (dateStr == null) {
+            return new Date();
+        }
+        try {
+            return Date.from(OffsetDateTime.parse(dateStr, FORMATTER).toInstant());
+        } catch (DateTimeParseException e) {
+            try {
+                return Date.from(Instant.parse(dateStr));
+            } catch (DateTimeParseException ignored) {
+                log.warn("Error parsing date: " + dateStr);
+                return new Date(); // Возвращаем текущую дату в случае ошибки
+            }
+        }
+    }
+
+    /**
+     * Дата в формате ISO 8601 (UTC); для null - пустая строка
+     */
+    public static String format(Date date) {
+        return date != null ? DateTimeFormatter.ISO_INSTANT.format(date.toInstant()) : "";
+    }
+}
@@ -0,0 +1,50 @@
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+
+/**
+ * Потоковое чтение JSON-ответов: {@link ResponseReader} работает прямо
+ * с потоком ответа через {@link JsonReader}, ненужные поля пропускаются
+ * без построения дерева JsonObject и без чтения всего ответа в строку.
+ */
+public final class JsonStreams {
+
+    private JsonStreams() {
+    }
+
+    public static <T> T read(ResponseBody body, ResponseReader<T> responseReader) throws IOException {
+        try (JsonReader reader = new JsonReader(body.charStream())) {
+            return responseReader.read(reader);
+        }
+    }
+
+    /**
+     * Строковое значение или null; числа и логические значения возвращаются строкой
+     */
+    public static String nextStringOrNull(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return String.valueOf(reader.nextBoolean());
+        }
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    /**
+     * Разбор ответа сервиса. Ответы только читаются, поэтому, в отличие от
+     * TypeAdapter, записи здесь нет совсем
+     */
+    @FunctionalInterface
+    public interface ResponseReader<T> {
+        T read(JsonReader in) throws IOException;
+    }
+}
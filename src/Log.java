@@ -0,0 +1,187 @@
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Простой журнал с уровнями и асинхронной записью. Вызывающий поток только
+ * кладет запись в неблокирующую очередь; форматирование времени и вывод в
+ * консоль выполняет отдельный фоновый поток. Сообщения для отключенных уровней
+ * не строятся: для них есть перегрузки с {@link Supplier}.
+ *
+ * Уровень задается свойством tempemail.log.level (по умолчанию INFO), для
+ * отдельного журнала - tempemail.log.level.&lt;имя&gt;, например
+ * -Dtempemail.log.level.TempEmailAPI=DEBUG. DEBUG - подробности по каждому
+ * опросу и письму, WARN и ERROR пишутся в stderr, остальное - в stdout.
+ */
+public final class Log {
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final Level DEFAULT_LEVEL = parseLevel(System.getProperty("tempemail.log.level"), Level.INFO);
+    // Сколько записей может ждать вывода; лишние отбрасываются с подсчетом
+    private static final int QUEUE_CAPACITY = Integer.getInteger("tempemail.log.queue", 10_000);
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private static final ConcurrentLinkedQueue<Record> queue = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger queued = new AtomicInteger();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicBoolean writerParked = new AtomicBoolean();
+    private static final Thread writer = startWriter();
+
+    private final String name;
+    private final Level level;
+
+    private Log(String name) {
+        this.name = name;
+        this.level = parseLevel(System.getProperty("tempemail.log.level." + name), DEFAULT_LEVEL);
+    }
+
+    public static Log get(Class<?> type) {
+        return new Log(type.getSimpleName());
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public boolean isEnabled(Level messageLevel) {
+        return messageLevel.compareTo(level) >= 0;
+    }
+
+    public void debug(String message) { log(Level.DEBUG, message, null); }
+    public void debug(Supplier<String> message) { if (isEnabled(Level.DEBUG)) log(Level.DEBUG, message.get(), null); }
+    public void info(String message) { log(Level.INFO, message, null); }
+    public void info(Supplier<String> message) { if (isEnabled(Level.INFO)) log(Level.INFO, message.get(), null); }
+    public void warn(String message) { log(Level.WARN, message, null); }
+    public void warn(String message, Throwable error) { log(Level.WARN, message, error); }
+    public void error(String message) { log(Level.ERROR, message, null); }
+    public void error(String message, Throwable error) { log(Level.ERROR, message, error); }
+
+    private void log(Level messageLevel, String message, Throwable error) {
+        if (!isEnabled(messageLevel)) {
+            return;
+        }
+        if (queued.incrementAndGet() > QUEUE_CAPACITY) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(new Record(System.currentTimeMillis(), messageLevel, name,
+                Thread.currentThread().getName(), message, error, isDebugEnabled()));
+        if (writerParked.get()) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Выводит все накопленные записи (например, перед завершением процесса)
+     */
+    public static void flush() {
+        drain();
+    }
+
+    private static Thread startWriter() {
+        Thread thread = new Thread(Log::writeLoop, "log-writer");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::drain, "log-flush"));
+        return thread;
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            if (!drain()) {
+                writerParked.set(true);
+                // Повторная проверка: запись могла прийти между drain и set
+                if (queue.isEmpty()) {
+                    LockSupport.parkNanos(100_000_000L);
+                }
+                writerParked.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return были ли записи
+     */
+    private static synchronized boolean drain() {
+        boolean any = false;
+        PrintStream lastStream = null;
+        Record record;
+        while ((record = queue.poll()) != null) {
+            queued.decrementAndGet();
+            any = true;
+            // Потоки читаются при выводе: консольный режим подменяет System.out
+            PrintStream stream = record.level.compareTo(Level.WARN) >= 0 ? System.err : System.out;
+            if (lastStream != null && lastStream != stream) {
+                lastStream.flush();
+            }
+            lastStream = stream;
+            stream.println(record.format());
+            if (record.error != null && record.withStackTrace) {
+                record.error.printStackTrace(stream);
+            }
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            System.err.println("Log queue overflow: " + lost + " messages dropped");
+        }
+        if (lastStream != null) {
+            lastStream.flush();
+        }
+        return any;
+    }
+
+    private static Level parseLevel(String value, Level fallback) {
+        if (value == null || value.isEmpty()) {
+            return fallback;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+
+    private static final class Record {
+        final long time;
+        final Level level;
+        final String logger;
+        final String thread;
+        final String message;
+        final Throwable error;
+        // Полный стек - только при включенном DEBUG, иначе одна строка с причиной
+        final boolean withStackTrace;
+
+        Record(long time, Level level, String logger, String thread, String message, Throwable error,
+               boolean withStackTrace) {
+            this.time = time;
+            this.level = level;
+            this.logger = logger;
+            this.thread = thread;
+            this.message = message;
+            this.error = error;
+            this.withStackTrace = withStackTrace;
+        }
+
+        String format() {
+            StringBuilder line = new StringBuilder(64 + message.length());
+            line.append(TIME.format(LocalTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault())))
+                    .append(' ').append(level)
+                    .append(" [").append(thread).append("] ")
+                    .append(logger).append(" - ").append(message);
+            if (error != null && !withStackTrace) {
+                line.append(": ").append(error);
+            }
+            return line.toString();
+        }
+    }
+}
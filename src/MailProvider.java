@@ -0,0 +1,110 @@
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Сервис временной почты. Реализации находятся через {@link java.util.ServiceLoader}
+ * (файл META-INF/services/MailProvider) и должны иметь публичный конструктор без аргументов.
+ * HTTP-запросы выполняются общим клиентом {@link TempEmailAPI#httpClient()}.
+ */
+public interface MailProvider {
+
+    /**
+     * Уникальное имя сервиса, сохраняется в {@link MailSession#getProvider()}
+     */
+    String getName();
+
+    /**
+     * Порядок при создании ящика: меньшее значение пробуется раньше
+     */
+    default int getPriority() {
+        return 100;
+    }
+
+    /**
+     * Хосты API сервиса - по ним запросы учитываются в {@link ProviderHealth}.
+     * Долгоживущие потоки событий сюда не включаются.
+     */
+    default List<String> getHosts() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Квота API сервиса: сколько запросов в секунду допускается к каждому из {@link #getHosts()}.
+     * Переопределяется свойством {@code -Dtempemail.ratelimit.<имя сервиса>}.
+     */
+    default double getRequestsPerSecond() {
+        return 5;
+    }
+
+    /**
+     * Сколько сервис хранит ящик после создания. Сохраненные локально ящики
+     * старше этого срока при запуске не восстанавливаются.
+     */
+    default Duration getRetention() {
+        return Duration.ofDays(1);
+    }
+
+    /**
+     * Создает новый ящик и возвращает аккаунт с заполненной сессией
+     */
+    EmailAccount createAccount() throws IOException;
+
+    /**
+     * Удаляет ящик на стороне сервиса (например, проигравший при параллельном создании).
+     * По умолчанию ничего не делает - ящик просто истечет сам.
+     */
+    default void deleteAccount(MailSession session) throws IOException {
+    }
+
+    /**
+     * Обновляет истекшую сессию (например, по сохраненному паролю) после 401.
+     * По умолчанию возвращает null - сессию обновить нельзя.
+     */
+    default MailSession renewSession(EmailAccount account) throws IOException {
+        return null;
+    }
+
+    /**
+     * Возвращает заголовки писем (без тел) в порядке, в котором их отдает сервис
+     */
+    List<EmailMessage> listMessages(MailSession session) throws IOException;
+
+    /**
+     * Запрос на получение полного письма - используется и для синхронной,
+     * и для параллельной загрузки тел
+     */
+    Request buildBodyRequest(MailSession session, String messageId);
+
+    /**
+     * Извлекает текст письма из успешного ответа на {@link #buildBodyRequest}
+     */
+    String parseBody(Response response) throws IOException;
+
+    default String fetchBody(MailSession session, String messageId) throws IOException {
+        Request request = buildBodyRequest(session, messageId);
+        try (Response response = TempEmailAPI.httpClient().newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new ProviderException(getName(), response.code(), "message body request failed");
+            }
+            return parseBody(response);
+        }
+    }
+
+    /**
+     * Удаляет письмо на стороне сервиса, возвращает true при успехе
+     */
+    boolean deleteMessage(MailSession session, String messageId) throws IOException;
+
+    /**
+     * Подписка на push-события ящика. Возвращает запущенную подписку
+     * или null, если сервис поддерживает только опрос.
+     */
+    default SseSubscription subscribe(MailSession session, SseSubscription.Listener listener) {
+        return null;
+    }
+}
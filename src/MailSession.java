@@ -0,0 +1,42 @@
+/**
+ * Неизменяемая сессия одного временного ящика: сервис, адрес, токен (или SID)
+ * и состояние синхронизации. Потокобезопасна и может использоваться
+ * одновременно из потоков опроса и UI.
+ */
+public final class MailSession {
+    private final String provider;
+    private final String address;
+    private final String token;
+    private final String accountId;
+    private final SyncState syncState;
+
+    public MailSession(String provider, String address, String token, String accountId) {
+        this(provider, address, token, accountId, new SyncState());
+    }
+
+    public MailSession(String provider, String address, String token, String accountId, SyncState syncState) {
+        this.provider = provider;
+        this.address = address;
+        this.token = token;
+        this.accountId = accountId;
+        this.syncState = syncState;
+    }
+
+    public String getProvider() { return provider; }
+    public String getAddress() { return address; }
+    public String getToken() { return token; }
+    public String getAccountId() { return accountId; }
+    public SyncState getSyncState() { return syncState; }
+
+    /**
+     * Новая сессия с обновленным токеном и тем же состоянием синхронизации
+     */
+    public MailSession withToken(String newToken) {
+        return new MailSession(provider, address, newToken, accountId, syncState);
+    }
+
+    @Override
+    public String toString() {
+        return provider + ":" + address;
+    }
+}
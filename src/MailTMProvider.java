@@ -0,0 +1,435 @@
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Mail.tm API - согласно документации https://docs.mail.tm/
+ */
+public class MailTMProvider implements MailProvider {
+    private static final Log log = Log.get(MailTMProvider.class);
+
+    public static final String NAME = "mail.tm";
+
+    private static final String API_URL = "https://api.mail.tm";
+    // Mercure hub, публикующий события аккаунта; переопределяется для локального стенда
+    private static final String MERCURE_URL = System.getProperty(
+            "tempemail.mailtm.mercure", "https://mercure.mail.tm/.well-known/mercure");
+    private static final Random random = new Random();
+    private static final long DOMAIN_TTL_MS = Long.getLong("tempemail.mailtm.domains.ttl.ms", 600_000);
+    // Пауза перед новой попыткой, если обновить список доменов не удалось
+    private static final long DOMAIN_RETRY_MS = Long.getLong("tempemail.mailtm.domains.retry.ms", 30_000);
+
+    // Список доменов не запрашивается при каждом создании ящика
+    private final DomainCache domainCache = new DomainCache(this::loadDomains, DOMAIN_TTL_MS, DOMAIN_RETRY_MS);
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getPriority() {
+        return 10; // основной сервис
+    }
+
+    @Override
+    public List<String> getHosts() {
+        return Collections.singletonList("api.mail.tm");
+    }
+
+    @Override
+    public double getRequestsPerSecond() {
+        return 8; // документированный лимит Mail.tm на IP
+    }
+
+    @Override
+    public EmailAccount createAccount() throws IOException {
+        OkHttpClient client = TempEmailAPI.httpClient();
+
+        // 1. Берем следующий активный домен из кэша
+        String domain = domainCache.next();
+        if (domain == null) {
+            throw new ProviderException(NAME, 0, "no domains available");
+        }
+
+        // 2. Создаем случайный адрес и пароль
+        String address = generateRandomUsername() + "@" + domain;
+        String password = UUID.randomUUID().toString().substring(0, 16);
+
+        // 3. Создаем аккаунт согласно API docs
+        JsonObject accountData = new JsonObject();
+        accountData.addProperty("address", address);
+        accountData.addProperty("password", password);
+
+        RequestBody body = RequestBody.create(
+                accountData.toString(),
+                MediaType.parse("application/json")
+        );
+
+        Request createRequest = new Request.Builder()
+                .url(API_URL + "/accounts")
+                .post(body)
+                .header("Content-Type", "application/json")
+                .header("User-Agent", "TemporaryEmailClient/1.0")
+                .build();
+
+        try (Response createResponse = client.newCall(createRequest).execute()) {
+            if (createResponse.code() != 201) {
+                String details = createResponse.body() != null ? createResponse.body().string() : "";
+                throw new ProviderException(NAME, createResponse.code(), "account creation failed " + details);
+            }
+        }
+        log.info("Mail.tm account created: " + address);
+
+        // 4. Получаем токен аутентификации
+        String[] tokenAndId = requestToken(address, password);
+        MailSession session = new MailSession(NAME, address, tokenAndId[0], tokenAndId[1]);
+        return new EmailAccount(address, password, session);
+    }
+
+    /**
+     * Токен Mail.tm со временем истекает; сохраненный пароль позволяет получить новый
+     */
+    @Override
+    public MailSession renewSession(EmailAccount account) throws IOException {
+        String[] tokenAndId = requestToken(account.getEmail(), account.getPassword());
+        log.info("Mail.tm token renewed for: " + account.getEmail());
+        return account.getSession().withToken(tokenAndId[0]);
+    }
+
+    private String[] requestToken(String address, String password) throws IOException {
+        JsonObject tokenData = new JsonObject();
+        tokenData.addProperty("address", address);
+        tokenData.addProperty("password", password);
+
+        RequestBody tokenBody = RequestBody.create(
+                tokenData.toString(),
+                MediaType.parse("application/json")
+        );
+
+        Request tokenRequest = new Request.Builder()
+                .url(API_URL + "/token")
+                .post(tokenBody)
+                .header("Content-Type", "application/json")
+                .build();
+
+        try (Response tokenResponse = TempEmailAPI.httpClient().newCall(tokenRequest).execute()) {
+            if (!tokenResponse.isSuccessful()) {
+                throw new ProviderException(NAME, tokenResponse.code(), "token request failed");
+            }
+            String[] tokenAndId = JsonStreams.read(tokenResponse.body(), TOKEN_ADAPTER);
+            if (tokenAndId[0] == null) {
+                throw new ProviderException(NAME, tokenResponse.code(), "token missing in response");
+            }
+            return tokenAndId;
+        }
+    }
+
+    private List<String> loadDomains() throws IOException {
+        Request request = new Request.Builder()
+                .url(API_URL + "/domains")
+                .header("User-Agent", "TemporaryEmailClient/1.0")
+                .build();
+
+        try (Response response = TempEmailAPI.httpClient().newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new ProviderException(NAME, response.code(), "domains request failed");
+            }
+            List<String> domains = JsonStreams.read(response.body(), DOMAIN_LIST_ADAPTER);
+            log.debug(() -> "Mail.tm domains loaded: " + domains);
+            return domains;
+        }
+    }
+
+    @Override
+    public List<EmailMessage> listMessages(MailSession session) throws IOException {
+        // Согласно API docs: GET /messages для получения списка сообщений.
+        // Адрес списка у всех ящиков один (ящик определяется токеном), а HTTP-кэши различают
+        // записи только по URL. Фрагмент с адресом ящика разводит их записи и на сервер не уходит.
+        Request request = new Request.Builder()
+                .url(HttpUrl.get(API_URL + "/messages").newBuilder()
+                        .fragment(session.getAddress())
+                        .build())
+                .header("Authorization", "Bearer " + session.getToken())
+                .header("User-Agent", "TemporaryEmailClient/1.0")
+                .tag(CachePolicy.class, CachePolicy.REVALIDATE)
+                .build();
+
+        try (Response response = TempEmailAPI.httpClient().newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new ProviderException(NAME, response.code(), "messages request failed");
+            }
+
+            List<EmailMessage> messages = JsonStreams.read(response.body(), MESSAGE_LIST_ADAPTER);
+            log.debug(() -> "Mail.tm API returned " + messages.size() + " messages");
+            return messages;
+        }
+    }
+
+    @Override
+    public Request buildBodyRequest(MailSession session, String messageId) {
+        return new Request.Builder()
+                .url(API_URL + "/messages/" + messageId)
+                .header("Authorization", "Bearer " + session.getToken())
+                .header("User-Agent", "TemporaryEmailClient/1.0")
+                .tag(CachePolicy.class, CachePolicy.IMMUTABLE)
+                .build();
+    }
+
+    @Override
+    public String parseBody(Response response) throws IOException {
+        return JsonStreams.read(response.body(), BODY_ADAPTER);
+    }
+
+    @Override
+    public boolean deleteMessage(MailSession session, String messageId) throws IOException {
+        Request request = new Request.Builder()
+                .url(API_URL + "/messages/" + messageId)
+                .delete()
+                .header("Authorization", "Bearer " + session.getToken())
+                .header("User-Agent", "TemporaryEmailClient/1.0")
+                .build();
+
+        try (Response response = TempEmailAPI.httpClient().newCall(request).execute()) {
+            return response.isSuccessful();
+        }
+    }
+
+    @Override
+    public void deleteAccount(MailSession session) throws IOException {
+        if (session.getAccountId() == null) {
+            return;
+        }
+        Request request = new Request.Builder()
+                .url(API_URL + "/accounts/" + session.getAccountId())
+                .delete()
+                .header("Authorization", "Bearer " + session.getToken())
+                .header("User-Agent", "TemporaryEmailClient/1.0")
+                .build();
+
+        try (Response response = TempEmailAPI.httpClient().newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new ProviderException(NAME, response.code(), "account deletion failed");
+            }
+        }
+    }
+
+    @Override
+    public SseSubscription subscribe(MailSession session, SseSubscription.Listener listener) {
+        if (session.getAccountId() == null) {
+            return null; // без ID аккаунта не на что подписываться
+        }
+
+        HttpUrl url = HttpUrl.parse(MERCURE_URL);
+        if (url == null) {
+            log.error("Invalid Mercure URL: " + MERCURE_URL);
+            return null;
+        }
+
+        Request request = new Request.Builder()
+                .url(url.newBuilder()
+                        .addQueryParameter("topic", "/accounts/" + session.getAccountId())
+                        .build())
+                .header("Authorization", "Bearer " + session.getToken())
+                .header("User-Agent", "TemporaryEmailClient/1.0")
+                .build();
+
+        return new SseSubscription(TempEmailAPI.httpClient(), request, listener).start();
+    }
+
+    /**
+     * Генерация случайного имени пользователя
+     */
+    private String generateRandomUsername() {
+        String[] adjectives = {"quick", "fast", "happy", "clever", "brave", "calm", "smart", "cool"};
+        String[] nouns = {"fox", "wolf", "tiger", "eagle", "lion", "bear", "cat", "dog"};
+        String[] numbers = {"2024", "123", "456", "789", "999", "111", "222", "333"};
+
+        String adjective = adjectives[random.nextInt(adjectives.length)];
+        String noun = nouns[random.nextInt(nouns.length)];
+        String number = numbers[random.nextInt(numbers.length)];
+
+        return adjective + noun + number;
+    }
+
+    // Потоковые адаптеры ответов Mail.tm: читают только нужные поля, остальное пропускают
+
+    /**
+     * Ответ POST /token: [token, id аккаунта]
+     */
+    static final JsonStreams.ResponseReader<String[]> TOKEN_ADAPTER = new JsonStreams.ResponseReader<String[]>() {
+        @Override
+        public String[] read(JsonReader in) throws IOException {
+            String[] result = new String[2];
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "token": result[0] = JsonStreams.nextStringOrNull(in); break;
+                    case "id": result[1] = JsonStreams.nextStringOrNull(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+            return result;
+        }
+    };
+
+    /**
+     * Ответ GET /domains: активные домены из hydra:member
+     */
+    static final JsonStreams.ResponseReader<List<String>> DOMAIN_LIST_ADAPTER = new JsonStreams.ResponseReader<List<String>>() {
+        @Override
+        public List<String> read(JsonReader in) throws IOException {
+            List<String> domains = new ArrayList<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!"hydra:member".equals(in.nextName())) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginArray();
+                while (in.hasNext()) {
+                    String domain = null;
+                    boolean active = true;
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "domain": domain = JsonStreams.nextStringOrNull(in); break;
+                            case "isActive": active = !"false".equals(JsonStreams.nextStringOrNull(in)); break;
+                            default: in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    if (domain != null && active) {
+                        domains.add(domain);
+                    }
+                }
+                in.endArray();
+            }
+            in.endObject();
+            return domains;
+        }
+    };
+
+    /**
+     * Ответ GET /messages: заголовки писем из hydra:member, тело не заполняется
+     */
+    static final JsonStreams.ResponseReader<List<EmailMessage>> MESSAGE_LIST_ADAPTER = new JsonStreams.ResponseReader<List<EmailMessage>>() {
+        @Override
+        public List<EmailMessage> read(JsonReader in) throws IOException {
+            List<EmailMessage> messages = new ArrayList<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!"hydra:member".equals(in.nextName())) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginArray();
+                while (in.hasNext()) {
+                    messages.add(readSummary(in));
+                }
+                in.endArray();
+            }
+            in.endObject();
+            return messages;
+        }
+
+        private EmailMessage readSummary(JsonReader in) throws IOException {
+            String id = null;
+            String from = null;
+            String subject = null;
+            String createdAt = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": id = JsonStreams.nextStringOrNull(in); break;
+                    case "subject": subject = JsonStreams.nextStringOrNull(in); break;
+                    case "createdAt": createdAt = JsonStreams.nextStringOrNull(in); break;
+                    case "from": from = readAddress(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+
+            // Тело письма загружается лениво - при первом просмотре
+            return new EmailMessage(id, from, subject != null ? subject : "", null, IsoDates.parse(createdAt));
+        }
+
+        private String readAddress(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                return JsonStreams.nextStringOrNull(in);
+            }
+            String address = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("address".equals(in.nextName())) {
+                    address = JsonStreams.nextStringOrNull(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return address;
+        }
+    };
+
+    /**
+     * Ответ GET /messages/{id}: текст письма; если text пуст - html (массив частей)
+     */
+    static final JsonStreams.ResponseReader<String> BODY_ADAPTER = new JsonStreams.ResponseReader<String>() {
+        @Override
+        public String read(JsonReader in) throws IOException {
+            String text = null;
+            String html = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "text": text = JsonStreams.nextStringOrNull(in); break;
+                    case "html": html = readHtml(in); break;
+                    default: in.skipValue();
+                }
+            }
+            in.endObject();
+
+            // Согласно API, текст может быть в text или html полях
+            if (text != null && !text.isEmpty()) {
+                return text;
+            } else if (html != null) {
+                return html;
+            } else {
+                return "No message content";
+            }
+        }
+
+        private String readHtml(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_ARRAY) {
+                return JsonStreams.nextStringOrNull(in);
+            }
+            StringBuilder html = new StringBuilder();
+            in.beginArray();
+            while (in.hasNext()) {
+                String part = JsonStreams.nextStringOrNull(in);
+                if (part != null) {
+                    html.append(part);
+                }
+            }
+            in.endArray();
+            return html.length() > 0 ? html.toString() : null;
+        }
+    };
+}
@@ -25,6 +25,7 @@ public class MainFrame extends JFrame {
         initializeServices();
         initializeUI();
         setupListeners();
+        showRestoredAccount();
     }
 
     private void initializeFonts() {
@@ -73,7 +74,7 @@ public class MainFrame extends JFrame {
         setMaximumSize(MAX_SIZE);
 
         emailPanel = new EmailPanel(emailService);
-        messagePanel = new MessagePanel();
+        messagePanel = new MessagePanel(emailService);
 
         JSplitPane mainSplitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
         mainSplitPane.setTopComponent(createHeaderPanel());
@@ -131,7 +132,11 @@ public class MainFrame extends JFrame {
     private void setupListeners() {
         emailService.setMessageListener(new EmailService.MessageListener() {
             @Override
-            public void onMessagesUpdated(List<EmailMessage> messages) {
+            public void onMessagesUpdated(EmailAccount account, List<EmailMessage> messages) {
+                // Окно показывает только текущий ящик
+                if (account != emailService.getCurrentAccount()) {
+                    return;
+                }
                 messagePanel.updateMessages(messages);
 
                 SwingUtilities.invokeLater(() -> {
@@ -144,6 +149,16 @@ public class MainFrame extends JFrame {
                     }
                 });
             }
+
+            @Override
+            public void onAccountRemoved(EmailAccount account) {
+                if (emailService.getCurrentAccount() != null) {
+                    return;
+                }
+                messagePanel.updateMessages(java.util.Collections.emptyList());
+                SwingUtilities.invokeLater(() ->
+                        globalStatusLabel.setText(" Ящик " + account.getEmail() + " удален"));
+            }
         });
 
         addWindowListener(new WindowAdapter() {
@@ -168,6 +183,20 @@ public class MainFrame extends JFrame {
         statusTimer.start();
     }
 
+    /**
+     * Показывает ящик, восстановленный из локального хранилища, не дожидаясь сети
+     */
+    private void showRestoredAccount() {
+        EmailAccount account = emailService.getCurrentAccount();
+        if (account == null) {
+            return;
+        }
+        emailPanel.updateEmailLabel(account.getEmail());
+        messagePanel.updateMessages(account.getMessages());
+        globalStatusLabel.setText(" Восстановлен ящик: " + account.getEmail() +
+                " | Сообщений в хранилище: " + account.getMessages().size());
+    }
+
     private void cleanup() {
         if (emailService != null) {
             emailService.stopService();
@@ -0,0 +1,101 @@
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный по объему LRU-кэш в памяти для неизменяемых ответов ({@link CachePolicy#IMMUTABLE}).
+ * Стоит перед дисковым кэшем OkHttp и отдает повторные запросы без обращения к диску.
+ */
+public class MemoryResponseCache implements Interceptor {
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public MemoryResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.max(1, maxBytes / 8);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.tag(CachePolicy.class) != CachePolicy.IMMUTABLE || !"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+
+        String key = request.url().toString();
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .header("Cache-Control", "private, max-age=31536000, immutable")
+                    .body(ResponseBody.create(cached.body, cached.contentType))
+                    .build();
+        }
+
+        misses.incrementAndGet();
+        Response response = chain.proceed(request);
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null || body.contentLength() > maxEntryBytes) {
+            return response;
+        }
+
+        MediaType contentType = body.contentType();
+        byte[] bytes = body.bytes();
+        if (bytes.length <= maxEntryBytes) {
+            put(key, new Entry(bytes, contentType));
+        }
+        return response.newBuilder()
+                .body(ResponseBody.create(bytes, contentType))
+                .build();
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            currentBytes -= previous.body.length;
+        }
+        currentBytes += entry.body.length;
+
+        // Выбрасываем самые давно использованные записи
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            currentBytes -= it.next().getValue().body.length;
+            it.remove();
+        }
+    }
+
+    public long getHitCount() { return hits.get(); }
+    public long getMissCount() { return misses.get(); }
+    public synchronized long getSizeBytes() { return currentBytes; }
+
+    private static final class Entry {
+        final byte[] body;
+        final MediaType contentType;
+
+        Entry(byte[] body, MediaType contentType) {
+            this.body = body;
+            this.contentType = contentType;
+        }
+    }
+}
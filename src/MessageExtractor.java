@@ -0,0 +1,122 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Извлекает из письма то, ради чего его обычно ждут тесты: одноразовый код
+ * и ссылку подтверждения. Шаблоны скомпилированы один раз, результат
+ * кэшируется по ящику и ID письма (ID уникальны только внутри ящика),
+ * поэтому повторные запросы не сканируют тело заново.
+ */
+public class MessageExtractor {
+    private static final int CACHE_SIZE = 4096;
+
+    // Код рядом с поясняющим словом: "Your code: 123456", "Код подтверждения - 4821"
+    private static final Pattern CODE_WITH_CONTEXT = Pattern.compile(
+            "(?iu)(?:code|код|otp|pin|passcode|one-time|пароль|verification|подтвержд\\p{L}*)" +
+            "[^\\p{N}\\n]{0,40}?\\b(\\p{N}{4,8})\\b");
+    // Отдельно стоящий 6-значный код - самый частый формат без пояснений
+    private static final Pattern BARE_CODE = Pattern.compile("(?<![\\p{N}.,:/-])\\b(\\d{6})\\b(?![.,:/-]?\\d)");
+    private static final Pattern LINK = Pattern.compile("https?://[^\\s\"'<>()\\[\\]]+");
+    private static final Pattern VERIFICATION_HINT = Pattern.compile(
+            "verif|confirm|activat|validat|token|reset|magic|login|signin|sign-in|auth");
+
+    private final Map<String, Extraction> cache = new LinkedHashMap<String, Extraction>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Extraction> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Результат для письма с загруженным телом; для незагруженного - только по теме
+     */
+    public Extraction extract(String account, EmailMessage message) {
+        String key = account + '\0' + message.getId();
+        synchronized (cache) {
+            Extraction cached = cache.get(key);
+            if (cached != null && (cached.withBody || !message.isBodyLoaded())) {
+                return cached;
+            }
+        }
+
+        String body = message.getBody();
+        String text = body == null ? "" : BodyRenderer.isHtml(body) ? BodyRenderer.htmlToText(body) : body;
+        String subject = message.getSubject() != null ? message.getSubject() : "";
+
+        List<String> codes = findCodes(subject + "\n" + text);
+        List<String> links = body != null ? findLinks(body) : Collections.emptyList();
+        Extraction extraction = new Extraction(codes, links, body != null);
+
+        synchronized (cache) {
+            cache.put(key, extraction);
+        }
+        return extraction;
+    }
+
+    private static List<String> findCodes(String text) {
+        Set<String> codes = new LinkedHashSet<>();
+        Matcher matcher = CODE_WITH_CONTEXT.matcher(text);
+        while (matcher.find()) {
+            codes.add(matcher.group(1));
+        }
+        matcher = BARE_CODE.matcher(text);
+        while (matcher.find()) {
+            codes.add(matcher.group(1));
+        }
+        return new ArrayList<>(codes);
+    }
+
+    private static List<String> findLinks(String body) {
+        Set<String> links = new LinkedHashSet<>();
+        Matcher matcher = LINK.matcher(body);
+        while (matcher.find()) {
+            links.add(matcher.group().replace("&amp;", "&"));
+        }
+        return new ArrayList<>(links);
+    }
+
+    /**
+     * Найденные коды и ссылки в порядке появления; лучшие кандидаты - первыми
+     */
+    public static final class Extraction {
+        private final List<String> codes;
+        private final List<String> links;
+        private final boolean withBody;
+
+        Extraction(List<String> codes, List<String> links, boolean withBody) {
+            this.codes = Collections.unmodifiableList(codes);
+            this.links = Collections.unmodifiableList(links);
+            this.withBody = withBody;
+        }
+
+        public List<String> getCodes() { return codes; }
+        public List<String> getLinks() { return links; }
+
+        /**
+         * Наиболее вероятный одноразовый код или null
+         */
+        public String getCode() {
+            return codes.isEmpty() ? null : codes.get(0);
+        }
+
+        /**
+         * Первая ссылка, похожая на подтверждение (verify, confirm, activate...), или null
+         */
+        public String getVerificationLink() {
+            for (String link : links) {
+                if (VERIFICATION_HINT.matcher(link.toLowerCase(Locale.ROOT)).find()) {
+                    return link;
+                }
+            }
+            return null;
+        }
+    }
+}
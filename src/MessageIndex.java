@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Полнотекстовый инвертированный индекс по теме, отправителю и телу писем.
+ * Термы хранятся в отсортированной карте, поэтому поиск по префиксу - это
+ * выборка диапазона, а не перебор всех писем. Обновляется инкрементально:
+ * новые письма добавляются, а при загрузке тела письмо переиндексируется.
+ * Тело ищется только у писем, тело которых уже загружено (открытых, загруженных
+ * заранее или при жадной загрузке тел); у остальных - тема и отправитель.
+ * Запись синхронизирована, чтение (поиск) - без блокировок.
+ * ID писем уникальны только внутри ящика, поэтому у каждого аккаунта свой индекс:
+ * поиск и удаление аккаунта не затрагивают письма других ящиков.
+ */
+public class MessageIndex {
+    private static final Pattern TAGS = Pattern.compile("<[^>]*>");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // email аккаунта -> индекс его писем
+    private final Map<String, AccountIndex> accounts = new ConcurrentHashMap<>();
+
+    /**
+     * Индексирует письмо, если оно новое или у него появилось тело
+     */
+    public synchronized void add(String account, EmailMessage message) {
+        AccountIndex index = accounts.computeIfAbsent(account, k -> new AccountIndex());
+        String id = message.getId();
+        Document existing = index.documents.get(id);
+        if (existing != null && (existing.hasBody || !message.isBodyLoaded())) {
+            return;
+        }
+        if (existing != null) {
+            index.unindex(id, existing);
+        }
+
+        Set<String> terms = new HashSet<>();
+        tokenize(message.getSubject(), terms);
+        tokenize(message.getFrom(), terms);
+        if (message.isBodyLoaded()) {
+            tokenize(TAGS.matcher(message.getBody()).replaceAll(" "), terms);
+        }
+        for (String term : terms) {
+            index.postings.computeIfAbsent(term, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        index.documents.put(id, new Document(terms, message.isBodyLoaded()));
+    }
+
+    public synchronized void addAll(String account, Collection<EmailMessage> messages) {
+        for (EmailMessage message : messages) {
+            add(account, message);
+        }
+    }
+
+    public synchronized void remove(String account, String messageId) {
+        AccountIndex index = accounts.get(account);
+        if (index == null) {
+            return;
+        }
+        Document document = index.documents.remove(messageId);
+        if (document != null) {
+            index.unindex(messageId, document);
+        }
+    }
+
+    /**
+     * Убирает из индекса письма аккаунта, которых нет среди текущих
+     */
+    public synchronized void retainOnly(String account, Collection<EmailMessage> current) {
+        AccountIndex index = accounts.get(account);
+        if (index == null) {
+            return;
+        }
+        Set<String> keep = new HashSet<>();
+        for (EmailMessage message : current) {
+            keep.add(message.getId());
+        }
+        index.documents.entrySet().removeIf(entry -> {
+            if (!keep.contains(entry.getKey())) {
+                index.unindex(entry.getKey(), entry.getValue());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Убирает из индекса все письма аккаунта
+     */
+    public synchronized void removeAccount(String account) {
+        accounts.remove(account);
+    }
+
+    /**
+     * Ищет письма аккаунта, содержащие все слова запроса. Последнее слово ищется
+     * по префиксу, чтобы результат обновлялся по мере набора.
+     *
+     * @return ID найденных писем; null, если запрос пустой (фильтровать не нужно)
+     */
+    public Set<String> search(String account, String query) {
+        Set<String> tokens = new LinkedHashSet<>();
+        tokenize(query, tokens);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        AccountIndex index = accounts.get(account);
+        if (index == null) {
+            return Collections.emptySet();
+        }
+
+        String[] words = tokens.toArray(new String[0]);
+        List<Set<String>> matches = new ArrayList<>(words.length);
+        for (int i = 0; i < words.length; i++) {
+            boolean prefix = i == words.length - 1 && !endsWithSeparator(query);
+            Set<String> ids = prefix ? index.prefixMatches(words[i]) : index.exactMatches(words[i]);
+            if (ids.isEmpty()) {
+                return Collections.emptySet();
+            }
+            matches.add(ids);
+        }
+
+        // Пересекаем, начиная с самого короткого списка: копируется только он
+        matches.sort(Comparator.comparingInt(Set::size));
+        Set<String> result = new HashSet<>();
+        for (String id : matches.get(0)) {
+            boolean all = true;
+            for (int i = 1; i < matches.size() && all; i++) {
+                all = matches.get(i).contains(id);
+            }
+            if (all) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        int size = 0;
+        for (AccountIndex index : accounts.values()) {
+            size += index.documents.size();
+        }
+        return size;
+    }
+
+    /**
+     * Число термов во всех индексах аккаунтов (общий терм считается в каждом)
+     */
+    public int termCount() {
+        int count = 0;
+        for (AccountIndex index : accounts.values()) {
+            count += index.postings.size();
+        }
+        return count;
+    }
+
+    private static void tokenize(String text, Set<String> terms) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        for (String token : SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                terms.add(token);
+            }
+        }
+    }
+
+    private static boolean endsWithSeparator(String query) {
+        return !query.isEmpty() && !Character.isLetterOrDigit(query.charAt(query.length() - 1));
+    }
+
+    /**
+     * Индекс писем одного аккаунта
+     */
+    private static final class AccountIndex {
+        // терм -> ID писем
+        final ConcurrentSkipListMap<String, Set<String>> postings = new ConcurrentSkipListMap<>();
+        // ID письма -> проиндексированный документ
+        final Map<String, Document> documents = new ConcurrentHashMap<>();
+
+        Set<String> exactMatches(String term) {
+            Set<String> ids = postings.get(term);
+            return ids != null ? ids : Collections.emptySet();
+        }
+
+        Set<String> prefixMatches(String prefix) {
+            NavigableMap<String, Set<String>> range = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+            if (range.size() == 1) {
+                return range.firstEntry().getValue();
+            }
+            Set<String> ids = new HashSet<>();
+            for (Set<String> posting : range.values()) {
+                ids.addAll(posting);
+            }
+            return ids;
+        }
+
+        void unindex(String id, Document document) {
+            for (String term : document.terms) {
+                Set<String> ids = postings.get(term);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        postings.remove(term, ids);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Document {
+        final Set<String> terms;
+        final boolean hasBody;
+
+        Document(Set<String> terms, boolean hasBody) {
+            this.terms = terms;
+            this.hasBody = hasBody;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import javax.swing.AbstractListModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Модель списка писем, которая при обновлении применяет разницу между
+ * старым и новым списком по ID письма (вставка, удаление, замена), а не
+ * пересоздает список. Соседние изменения объединяются в одно событие, поэтому
+ * JList сохраняет выделение и перерисовывает только изменившиеся строки.
+ * Используется только из EDT.
+ */
+public class MessageListModel extends AbstractListModel<EmailMessage> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<EmailMessage> items = new ArrayList<>();
+
+    @Override
+    public int getSize() {
+        return items.size();
+    }
+
+    @Override
+    public EmailMessage getElementAt(int index) {
+        return items.get(index);
+    }
+
+    public int indexOf(EmailMessage message) {
+        return items.indexOf(message);
+    }
+
+    /**
+     * Приводит модель к новому списку. Типичный случай - новые письма сверху
+     * и пропавшие удаленные - дает одно событие вставки и по событию на каждый
+     * непрерывный блок удалений.
+     */
+    public void setMessages(List<EmailMessage> messages) {
+        List<EmailMessage> target = messages != null ? messages : Collections.emptyList();
+        Set<String> targetIds = new HashSet<>(target.size() * 2);
+        for (EmailMessage message : target) {
+            targetIds.add(message.getId());
+        }
+
+        // 1. Удаляем письма, которых нет в новом списке, блоками с конца
+        int runEnd = items.size();
+        for (int i = items.size() - 1; i >= -1; i--) {
+            if (i >= 0 && !targetIds.contains(items.get(i).getId())) {
+                continue;
+            }
+            if (runEnd > i + 1) {
+                items.subList(i + 1, runEnd).clear();
+                fireIntervalRemoved(this, i + 1, runEnd - 1);
+            }
+            runEnd = i;
+        }
+
+        // 2. Проходим новый список: совпадения оставляем, новые вставляем блоками,
+        //    письма не на своем месте убираем - они будут вставлены дальше
+        Set<String> pending = new HashSet<>(items.size() * 2);
+        for (EmailMessage message : items) {
+            pending.add(message.getId());
+        }
+
+        int i = 0;
+        int j = 0;
+        while (i < target.size()) {
+            EmailMessage wanted = target.get(i);
+            if (j < items.size() && items.get(j).getId().equals(wanted.getId())) {
+                pending.remove(wanted.getId());
+                if (items.get(j) != wanted) {
+                    items.set(j, wanted);
+                    fireContentsChanged(this, j, j);
+                }
+                i++;
+                j++;
+            } else if (pending.contains(wanted.getId())) {
+                EmailMessage misplaced = items.remove(j);
+                pending.remove(misplaced.getId());
+                fireIntervalRemoved(this, j, j);
+            } else {
+                int start = i;
+                while (i < target.size() && !pending.contains(target.get(i).getId())) {
+                    i++;
+                }
+                items.addAll(j, target.subList(start, i));
+                fireIntervalAdded(this, j, j + (i - start) - 1);
+                j += i - start;
+            }
+        }
+        if (j < items.size()) {
+            int last = items.size() - 1;
+            items.subList(j, items.size()).clear();
+            fireIntervalRemoved(this, j, last);
+        }
+    }
+}
@@ -1,14 +1,32 @@
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MessagePanel extends JPanel {
+    // Размер части текста письма, добавляемой за одно событие EDT
+    private static final int BODY_CHUNK_CHARS = 32 * 1024;
+
+    private final EmailService emailService;
     private JList<EmailMessage> messageList;
-    private DefaultListModel<EmailMessage> listModel;
+    private MessageListModel listModel;
+    private MessageListRenderer listRenderer;
+    private JScrollPane listScrollPane;
     private JTextArea messageContentArea;
+    private JTextField searchField;
+    // Последний полученный список писем без фильтра
+    private List<EmailMessage> allMessages;
+    // Письмо, показанное в области содержимого
+    private EmailMessage displayedMessage;
+    private SwingWorker<String, Void> bodyWorker;
+    private final BodyRenderer bodyRenderer = new BodyRenderer();
 
-    public MessagePanel() {
+    public MessagePanel(EmailService emailService) {
+        this.emailService = emailService;
         initializeUI();
     }
 
@@ -26,15 +44,28 @@ public class MessagePanel extends JPanel {
                 new Font("SansSerif", Font.BOLD, 12))
         );
 
-        listModel = new DefaultListModel<>();
+        listModel = new MessageListModel();
         messageList = new JList<>(listModel);
         messageList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        messageList.setCellRenderer(new MessageListRenderer());
+        listRenderer = new MessageListRenderer(messageList);
+        messageList.setCellRenderer(listRenderer);
+        // Фиксированный размер ячейки: JList не измеряет каждую строку при изменениях модели
+        messageList.setFixedCellHeight(listRenderer.getCellHeight());
+        messageList.setFixedCellWidth(200);
 
-        JScrollPane listScrollPane = new JScrollPane(messageList);
+        listScrollPane = new JScrollPane(messageList);
         listScrollPane.setPreferredSize(new Dimension(400, 200));
         listPanel.add(listScrollPane, BorderLayout.CENTER);
 
+        // Поиск по теме, отправителю и тексту - фильтрует список по мере набора
+        searchField = new JTextField();
+        searchField.setToolTipText("Поиск по теме, отправителю и тексту писем");
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 0));
+        searchPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 5, 0));
+        searchPanel.add(new JLabel("Поиск:"), BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        listPanel.add(searchPanel, BorderLayout.NORTH);
+
         // Панель содержимого сообщения
         JPanel contentPanel = new JPanel(new BorderLayout());
         contentPanel.setBorder(BorderFactory.createTitledBorder(
@@ -65,10 +96,22 @@ public class MessagePanel extends JPanel {
     }
 
     private void setupListeners() {
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { applyFilter(); }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) { applyFilter(); }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) { applyFilter(); }
+        });
+
         messageList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 EmailMessage selectedMessage = messageList.getSelectedValue();
-                if (selectedMessage != null) {
+                // Вставки и удаления сдвигают выделение - то же письмо заново не показываем
+                if (selectedMessage != null && selectedMessage != displayedMessage) {
                     displayMessage(selectedMessage);
                 }
             }
@@ -77,42 +120,278 @@ public class MessagePanel extends JPanel {
 
     public void updateMessages(List<EmailMessage> messages) {
         SwingUtilities.invokeLater(() -> {
-            listModel.clear();
-            if (messages != null) {
-                for (EmailMessage message : messages) {
-                    listModel.addElement(message);
+            allMessages = messages;
+            applyFilter();
+        });
+    }
+
+    /**
+     * Показывает письма, подходящие под строку поиска (поиск идет по индексу в EmailService)
+     */
+    private void applyFilter() {
+        List<EmailMessage> visible = allMessages;
+        EmailAccount account = emailService.getCurrentAccount();
+        String query = searchField.getText();
+        if (account != null && !query.trim().isEmpty()) {
+            visible = emailService.searchMessages(account, query);
+        }
+
+        // Запоминаем верхнее видимое письмо, чтобы вставка новых писем над ним
+        // не сдвигала то, что пользователь сейчас читает
+        JViewport viewport = listScrollPane.getViewport();
+        int firstVisible = messageList.getFirstVisibleIndex();
+        EmailMessage anchor = null;
+        int anchorOffset = 0;
+        if (firstVisible > 0 || (firstVisible == 0 && viewport.getViewPosition().y > 0)) {
+            anchor = listModel.getElementAt(firstVisible);
+            anchorOffset = viewport.getViewPosition().y - messageList.getCellBounds(firstVisible, firstVisible).y;
+        }
+
+        listRenderer.setAccount(account != null ? account.getEmail() : null);
+        listModel.setMessages(visible);
+
+        if (anchor != null) {
+            int index = listModel.indexOf(anchor);
+            if (index >= 0) {
+                listScrollPane.validate();
+                Rectangle bounds = messageList.getCellBounds(index, index);
+                if (bounds != null) {
+                    viewport.setViewPosition(new Point(viewport.getViewPosition().x, bounds.y + anchorOffset));
                 }
             }
-        });
+        }
     }
 
     private void displayMessage(EmailMessage message) {
+        displayedMessage = message;
+        EmailAccount account = emailService.getCurrentAccount();
+        if (bodyWorker != null) {
+            bodyWorker.cancel(false);
+        }
+
+        // Заголовки показываем сразу, тело загружается и преобразуется в фоне
+        showMessageContent(message, message.isBodyLoaded() ? "" : "Загрузка содержимого...");
+
+        bodyWorker = new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() {
+                if (account == null
+                        || (!message.isBodyLoaded() && emailService.loadMessageBody(account, message) == null)) {
+                    return null;
+                }
+                return bodyRenderer.render(account.getEmail(), message);
+            }
+
+            @Override
+            protected void done() {
+                // Пользователь мог уже выбрать другое письмо
+                if (isCancelled() || displayedMessage != message) {
+                    return;
+                }
+                String text;
+                try {
+                    text = get();
+                } catch (Exception e) {
+                    text = null;
+                }
+                if (text == null) {
+                    showMessageContent(message, "Message content unavailable");
+                    return;
+                }
+                showMessageContent(message, "");
+                appendInChunks(message, text, 0);
+            }
+        };
+        bodyWorker.execute();
+    }
+
+    /**
+     * Добавляет текст письма частями, по одной за событие EDT, чтобы большое
+     * письмо не блокировало интерфейс. Прерывается, если выбрано другое письмо.
+     */
+    private void appendInChunks(EmailMessage message, String text, int offset) {
+        if (displayedMessage != message) {
+            return;
+        }
+        int end = Math.min(text.length(), offset + BODY_CHUNK_CHARS);
+        messageContentArea.append(text.substring(offset, end));
+        if (offset == 0) {
+            messageContentArea.setCaretPosition(0);
+        }
+        if (end < text.length()) {
+            SwingUtilities.invokeLater(() -> appendInChunks(message, text, end));
+        }
+    }
+
+    private void showMessageContent(EmailMessage message, String body) {
         StringBuilder content = new StringBuilder();
         content.append("От: ").append(message.getFrom()).append("\n");
         content.append("Тема: ").append(message.getSubject()).append("\n");
         content.append("Дата: ").append(message.getDate()).append("\n");
-        content.append("\n").append(message.getBody());
+        content.append("\n").append(body);
 
         messageContentArea.setText(content.toString());
         messageContentArea.setCaretPosition(0);
     }
 
-    // Кастомный рендерер для списка сообщений
-    private static class MessageListRenderer extends DefaultListCellRenderer {
-        @Override
-        public Component getListCellRendererComponent(JList<?> list, Object value,
-                                                      int index, boolean isSelected,
-                                                      boolean cellHasFocus) {
-            super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
-
-            if (value instanceof EmailMessage) {
-                EmailMessage message = (EmailMessage) value;
-                String displayText = String.format("<html><b>%s</b><br/><small>От: %s</small></html>",
-                        message.getSubject(), message.getFrom());
-                setText(displayText);
+    // Кастомный рендерер для списка сообщений: рисует две строки сам, без HTML.
+    // Строки для отображения (и их обрезка под ширину ячейки) кэшируются по ящику и ID письма
+    // (ID уникален только в своем ящике), поэтому отрисовка ячейки не зависит от длины темы
+    // и не разбирает разметку.
+    private static class MessageListRenderer extends JComponent implements ListCellRenderer<EmailMessage> {
+        private static final int PADDING_X = 6;
+        private static final int PADDING_Y = 4;
+        private static final int LINE_GAP = 2;
+        private static final int CACHE_SIZE = 4096;
+        private static final String DESKTOP_HINTS = "awt.font.desktophints";
+
+        private final Map<String, CellText> cache = new LinkedHashMap<String, CellText>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CellText> eldest) {
+                return size() > CACHE_SIZE;
             }
+        };
+
+        // Ящик, чьи письма сейчас в списке - часть ключа кэша
+        private String account = "";
+        // Настройки сглаживания шрифтов системы; обновляются, только когда система их меняет
+        private volatile Map<?, ?> desktopHints;
 
+        private Font baseFont;
+        private Font subjectFont;
+        private Font fromFont;
+        private FontMetrics subjectMetrics;
+        private FontMetrics fromMetrics;
+
+        private CellText text;
+        private boolean selected;
+        private Color selectionBackground;
+        private Color selectionForeground;
+
+        MessageListRenderer(JList<?> list) {
+            setOpaque(true);
+            updateFonts(list);
+            Toolkit toolkit = Toolkit.getDefaultToolkit();
+            desktopHints = readDesktopHints(toolkit);
+            toolkit.addPropertyChangeListener(DESKTOP_HINTS, event -> {
+                desktopHints = readDesktopHints(toolkit);
+                list.repaint();
+            });
+        }
+
+        void setAccount(String account) {
+            this.account = account != null ? account : "";
+        }
+
+        private static Map<?, ?> readDesktopHints(Toolkit toolkit) {
+            Object hints = toolkit.getDesktopProperty(DESKTOP_HINTS);
+            return hints instanceof Map ? (Map<?, ?>) hints : null;
+        }
+
+        /**
+         * Высота ячейки - две строки текста; задается списку как фиксированная
+         */
+        int getCellHeight() {
+            return PADDING_Y * 2 + subjectMetrics.getHeight() + LINE_GAP + fromMetrics.getHeight();
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends EmailMessage> list, EmailMessage value,
+                                                      int index, boolean isSelected, boolean cellHasFocus) {
+            if (list.getFont() != baseFont) {
+                updateFonts(list);
+            }
+            text = value != null
+                    ? cache.computeIfAbsent(account + '\0' + value.getId(), key -> new CellText(value))
+                    : null;
+            selected = isSelected;
+            selectionBackground = list.getSelectionBackground();
+            selectionForeground = list.getSelectionForeground();
+            setBackground(list.getBackground());
+            setForeground(list.getForeground());
             return this;
         }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setColor(selected ? selectionBackground : getBackground());
+            g2.fillRect(0, 0, getWidth(), getHeight());
+            if (text == null) {
+                return;
+            }
+
+            Map<?, ?> hints = desktopHints;
+            if (hints != null) {
+                g2.addRenderingHints(hints);
+            }
+
+            int available = getWidth() - PADDING_X * 2;
+            text.clip(available, subjectMetrics, fromMetrics);
+
+            Color foreground = selected ? selectionForeground : getForeground();
+            int y = PADDING_Y + subjectMetrics.getAscent();
+            g2.setColor(foreground);
+            g2.setFont(subjectFont);
+            g2.drawString(text.clippedSubject, PADDING_X, y);
+
+            y += subjectMetrics.getDescent() + LINE_GAP + fromMetrics.getAscent();
+            g2.setColor(selected ? foreground : Color.GRAY);
+            g2.setFont(fromFont);
+            g2.drawString(text.clippedFrom, PADDING_X, y);
+        }
+
+        private void updateFonts(JList<?> list) {
+            baseFont = list.getFont();
+            subjectFont = baseFont.deriveFont(Font.BOLD);
+            fromFont = baseFont.deriveFont(baseFont.getSize2D() - 1f);
+            subjectMetrics = list.getFontMetrics(subjectFont);
+            fromMetrics = list.getFontMetrics(fromFont);
+            cache.clear(); // обрезка зависит от шрифта
+        }
+
+        /**
+         * Готовые строки ячейки и их обрезанные варианты для последней ширины
+         */
+        private static final class CellText {
+            final String subject;
+            final String from;
+            int clippedWidth = -1;
+            String clippedSubject;
+            String clippedFrom;
+
+            CellText(EmailMessage message) {
+                this.subject = message.getSubject() != null && !message.getSubject().isEmpty()
+                        ? message.getSubject() : "(без темы)";
+                this.from = "От: " + message.getFrom();
+            }
+
+            void clip(int width, FontMetrics subjectMetrics, FontMetrics fromMetrics) {
+                if (width == clippedWidth) {
+                    return;
+                }
+                clippedWidth = width;
+                clippedSubject = clipToWidth(subject, width, subjectMetrics);
+                clippedFrom = clipToWidth(from, width, fromMetrics);
+            }
+
+            private static String clipToWidth(String value, int width, FontMetrics metrics) {
+                if (metrics.stringWidth(value) <= width) {
+                    return value;
+                }
+                String ellipsis = "…";
+                int limit = width - metrics.stringWidth(ellipsis);
+                // Ширина символов почти постоянна - оцениваем длину и уточняем
+                int estimate = Math.max(0, (int) ((long) value.length() * limit / Math.max(1, metrics.stringWidth(value))));
+                int end = Math.min(value.length(), estimate);
+                while (end < value.length() && metrics.stringWidth(value.substring(0, end + 1)) <= limit) {
+                    end++;
+                }
+                while (end > 0 && metrics.stringWidth(value.substring(0, end)) > limit) {
+                    end--;
+                }
+                return value.substring(0, end) + ellipsis;
+            }
+        }
     }
-}
\ No newline at end of file
+}
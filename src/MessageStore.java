@@ -0,0 +1,589 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Локальное хранилище аккаунтов, токенов и писем, чтобы после перезапуска
+ * сразу показать сохраненные ящики и синхронизировать только изменения.
+ *
+ * Формат - журнал только на дозапись: [int длина][byte тип][JSON в UTF-8].
+ * Последняя запись по ключу побеждает, удаление - отдельная запись-надгробие.
+ * При открытии файл отображается в память и один раз просматривается для
+ * построения индекса; если мертвых записей больше половины, журнал сжимается.
+ * Испорченная запись с целым заголовком пропускается (ее длина известна),
+ * обрезается только недописанная запись в конце файла.
+ *
+ * Журнал могут одновременно использовать несколько процессов (окно и консольные
+ * запуски): загрузка и каждая дозапись берут короткую блокировку файла .lock,
+ * дозапись идет в текущий конец файла, а сжатие другим процессом замечается
+ * по смене файла и приводит к его переоткрытию. В журнале пароли, токены и тексты
+ * писем, поэтому каталог и файлы доступны только владельцу ({@link PrivateFiles}).
+ */
+public class MessageStore implements AutoCloseable {
+    private static final Log log = Log.get(MessageStore.class);
+
+    private static final byte TYPE_ACCOUNT = 1;
+    private static final byte TYPE_MESSAGE = 2;
+    private static final byte TYPE_REMOVE_ACCOUNT = 3;
+    private static final byte TYPE_REMOVE_MESSAGE = 4;
+    private static final int HEADER_BYTES = 5;
+    // Сколько ждать, пока журнал заблокирован другим процессом
+    private static final long LOCK_WAIT_MS = Long.getLong("tempemail.store.lock.wait.ms", 5000);
+
+    private static final Gson gson = new Gson();
+
+    private final File file;
+    private FileChannel channel;
+    // Идентификатор открытого файла - по нему видно, что другой процесс сжал журнал
+    private Object fileKey;
+    // Блокировка на отдельном файле: в каждый момент журнал читает или пишет только один процесс
+    private FileChannel lockChannel;
+
+    // Индекс последних записей: аккаунты и письма по адресу аккаунта, внутри - по id письма
+    private final Map<String, StoredAccount> accounts = new LinkedHashMap<>();
+    private final Map<String, Map<String, StoredMessage>> messages = new LinkedHashMap<>();
+    private int messageCount;
+    private long liveBytes;
+
+    private MessageStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Открывает (или создает) хранилище и загружает индекс
+     */
+    public static MessageStore open(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null) {
+            PrivateFiles.createDirectories(dir);
+        }
+        MessageStore store = new MessageStore(file);
+        store.load();
+        return store;
+    }
+
+    private void load() throws IOException {
+        lockChannel = PrivateFiles.open(new File(file.getPath() + ".lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lock();
+        } catch (IOException e) {
+            lockChannel.close();
+            throw e;
+        }
+        try {
+            scan();
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void scan() throws IOException {
+        channel = PrivateFiles.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        long validEnd = 0;
+        int skipped = 0;
+
+        if (size > 0) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                byte type = buffer.get();
+                if (length < 0 || length > buffer.remaining()) {
+                    break; // недописанная запись в конце - обрежем
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                if (!apply(type, new String(payload, StandardCharsets.UTF_8), HEADER_BYTES + length)) {
+                    // Испорченная запись - пропускаем, записи за ней целы; место освободит сжатие
+                    log.warn("Skipping damaged record at " + start);
+                    skipped++;
+                }
+                validEnd = buffer.position();
+                if (buffer.position() == start) {
+                    break;
+                }
+            }
+        }
+
+        if (validEnd < size) {
+            log.warn("Truncating damaged tail at " + validEnd + " of " + size + " bytes");
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+        fileKey = currentFileKey();
+
+        // Сжатие перепишет журнал и без пропущенных записей, чтобы не разбирать их при каждом запуске
+        if (skipped > 0 || (validEnd > 64 * 1024 && liveBytes * 2 < validEnd)) {
+            compact();
+        }
+        log.info("Loaded " + accounts.size() + " accounts, " + messageCount + " messages");
+    }
+
+    /**
+     * Применяет запись к индексу; false, если запись не разбирается или в ней нет ключа
+     */
+    private boolean apply(byte type, String json, int recordBytes) {
+        try {
+            switch (type) {
+                case TYPE_ACCOUNT: {
+                    StoredAccount account = gson.fromJson(json, StoredAccount.class);
+                    if (account == null || account.email == null) {
+                        return false;
+                    }
+                    StoredAccount previous = accounts.remove(account.email);
+                    if (previous != null) {
+                        liveBytes -= previous.recordBytes;
+                    }
+                    account.recordBytes = recordBytes;
+                    accounts.put(account.email, account);
+                    liveBytes += recordBytes;
+                    return true;
+                }
+                case TYPE_MESSAGE: {
+                    StoredMessage message = gson.fromJson(json, StoredMessage.class);
+                    if (message == null || message.account == null || message.id == null) {
+                        return false;
+                    }
+                    message.recordBytes = recordBytes;
+                    putMessage(message);
+                    liveBytes += recordBytes;
+                    return true;
+                }
+                case TYPE_REMOVE_ACCOUNT: {
+                    String email = gson.fromJson(json, String.class);
+                    if (email == null) {
+                        return false;
+                    }
+                    StoredAccount previous = accounts.remove(email);
+                    if (previous != null) {
+                        liveBytes -= previous.recordBytes;
+                    }
+                    Map<String, StoredMessage> removed = messages.remove(email);
+                    if (removed != null) {
+                        for (StoredMessage message : removed.values()) {
+                            liveBytes -= message.recordBytes;
+                        }
+                        messageCount -= removed.size();
+                    }
+                    return true;
+                }
+                case TYPE_REMOVE_MESSAGE: {
+                    StoredMessage removed = gson.fromJson(json, StoredMessage.class);
+                    if (removed == null || removed.account == null || removed.id == null) {
+                        return false;
+                    }
+                    removeMessage(removed.account, removed.id);
+                    return true;
+                }
+                default:
+                    log.warn("Unknown record type " + type);
+                    return true;
+            }
+        } catch (JsonParseException e) {
+            log.warn("Unreadable record: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Восстанавливает сохраненные аккаунты вместе с сессиями и письмами.
+     * Письма кладутся в состояние синхронизации, поэтому первый опрос
+     * после запуска загружает только новые письма.
+     */
+    public synchronized List<EmailAccount> loadAccounts() {
+        List<EmailAccount> result = new ArrayList<>();
+        for (StoredAccount stored : accounts.values()) {
+            result.add(toAccount(stored, accountMessages(stored.email)));
+        }
+        return result;
+    }
+
+    /**
+     * Восстанавливает один аккаунт по адресу; null, если его нет в хранилище
+     */
+    public synchronized EmailAccount loadAccount(String email) {
+        StoredAccount stored = accounts.get(email);
+        if (stored == null) {
+            return null;
+        }
+        return toAccount(stored, accountMessages(email));
+    }
+
+    private List<EmailMessage> accountMessages(String email) {
+        List<EmailMessage> result = new ArrayList<>();
+        for (StoredMessage message : messages.getOrDefault(email, Collections.emptyMap()).values()) {
+            result.add(toMessage(message));
+        }
+        return result;
+    }
+
+    /**
+     * Кладет письмо в индекс вместо прежней записи с тем же id; размер новой записи
+     * в liveBytes учитывает вызывающий
+     */
+    private void putMessage(StoredMessage message) {
+        StoredMessage previous = messages.computeIfAbsent(message.account, k -> new LinkedHashMap<>())
+                .put(message.id, message);
+        if (previous != null) {
+            liveBytes -= previous.recordBytes;
+        } else {
+            messageCount++;
+        }
+    }
+
+    private void removeMessage(String account, String id) {
+        Map<String, StoredMessage> accountMessages = messages.get(account);
+        StoredMessage previous = accountMessages != null ? accountMessages.remove(id) : null;
+        if (previous == null) {
+            return;
+        }
+        liveBytes -= previous.recordBytes;
+        messageCount--;
+        if (accountMessages.isEmpty()) {
+            messages.remove(account);
+        }
+    }
+
+    private static EmailMessage toMessage(StoredMessage stored) {
+        return new EmailMessage(stored.id, stored.from, stored.subject, stored.body, new Date(stored.date));
+    }
+
+    private static EmailAccount toAccount(StoredAccount stored, List<EmailMessage> accountMessages) {
+        SyncState syncState = new SyncState();
+        accountMessages.sort(Comparator.comparing(EmailMessage::getDate).reversed());
+        for (EmailMessage message : accountMessages) {
+            syncState.put(message);
+        }
+
+        MailSession session = new MailSession(stored.provider, stored.email, stored.token, stored.accountId, syncState);
+        EmailAccount account = new EmailAccount(stored.email, stored.password, session);
+        if (stored.createdAt > 0) {
+            account.setCreatedAt(stored.createdAt);
+        }
+        account.setMessages(accountMessages);
+        return account;
+    }
+
+    /**
+     * Сохраняет аккаунт, если он новый, у него сменился токен или записи
+     * прошлых версий не хватает времени создания
+     */
+    public synchronized void saveAccount(EmailAccount account) {
+        MailSession session = account.getSession();
+        if (session == null) {
+            return;
+        }
+        StoredAccount existing = accounts.get(account.getEmail());
+        if (existing != null && equals(existing.token, session.getToken())
+                && existing.createdAt == account.getCreatedAt()) {
+            return;
+        }
+
+        StoredAccount stored = new StoredAccount();
+        stored.email = account.getEmail();
+        stored.password = account.getPassword();
+        stored.provider = session.getProvider();
+        stored.token = session.getToken();
+        stored.accountId = session.getAccountId();
+        stored.createdAt = account.getCreatedAt();
+        FileLock lock = beginWrite();
+        if (lock == null) {
+            return;
+        }
+        try {
+            if (write(TYPE_ACCOUNT, gson.toJson(stored), stored)) {
+                accounts.put(stored.email, stored);
+            }
+        } finally {
+            endWrite(lock);
+        }
+    }
+
+    public synchronized void removeAccount(EmailAccount account) {
+        String email = account.getEmail();
+        if (!accounts.containsKey(email)) {
+            return;
+        }
+        FileLock lock = beginWrite();
+        if (lock == null) {
+            return;
+        }
+        try {
+            if (write(TYPE_REMOVE_ACCOUNT, gson.toJson(email), null)) {
+                apply(TYPE_REMOVE_ACCOUNT, gson.toJson(email), 0);
+            }
+        } finally {
+            endWrite(lock);
+        }
+    }
+
+    /**
+     * Сохраняет новые письма и письма, у которых с прошлого раза загрузилось тело.
+     * Уже сохраненные без изменений письма пропускаются - это только поиск в индексе,
+     * без блокировки файла.
+     */
+    public synchronized void saveMessages(EmailAccount account, List<EmailMessage> accountMessages) {
+        Map<String, StoredMessage> stored = messages.getOrDefault(account.getEmail(), Collections.emptyMap());
+        List<StoredMessage> changed = new ArrayList<>();
+        for (EmailMessage message : accountMessages) {
+            StoredMessage existing = stored.get(message.getId());
+            if (existing != null && (existing.body != null || !message.isBodyLoaded())) {
+                continue;
+            }
+
+            StoredMessage record = new StoredMessage();
+            record.account = account.getEmail();
+            record.id = message.getId();
+            record.from = message.getFrom();
+            record.subject = message.getSubject();
+            record.body = message.getBody();
+            record.date = message.getDate() != null ? message.getDate().getTime() : 0;
+            changed.add(record);
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        FileLock lock = beginWrite();
+        if (lock == null) {
+            return;
+        }
+        try {
+            for (StoredMessage record : changed) {
+                if (write(TYPE_MESSAGE, gson.toJson(record), record)) {
+                    putMessage(record);
+                }
+            }
+        } finally {
+            endWrite(lock);
+        }
+    }
+
+    /**
+     * Удаляет из хранилища письма аккаунта, которых больше нет на сервере
+     */
+    public synchronized void retainMessages(EmailAccount account, List<EmailMessage> current) {
+        String email = account.getEmail();
+        Set<String> keep = new HashSet<>();
+        for (EmailMessage message : current) {
+            keep.add(message.getId());
+        }
+
+        List<StoredMessage> gone = new ArrayList<>();
+        for (StoredMessage stored : messages.getOrDefault(email, Collections.emptyMap()).values()) {
+            if (!keep.contains(stored.id)) {
+                gone.add(stored);
+            }
+        }
+        if (gone.isEmpty()) {
+            return;
+        }
+
+        FileLock lock = beginWrite();
+        if (lock == null) {
+            return;
+        }
+        try {
+            for (StoredMessage stored : gone) {
+                StoredMessage tombstone = new StoredMessage();
+                tombstone.account = stored.account;
+                tombstone.id = stored.id;
+                if (write(TYPE_REMOVE_MESSAGE, gson.toJson(tombstone), null)) {
+                    removeMessage(stored.account, stored.id);
+                }
+            }
+        } finally {
+            endWrite(lock);
+        }
+    }
+
+    /**
+     * Блокирует журнал и встает в его текущий конец - туда мог дописать другой процесс.
+     * Возвращает null, если журнал недоступен (ошибка уже записана в лог).
+     */
+    private FileLock beginWrite() {
+        if (!channel.isOpen()) {
+            return null;
+        }
+        try {
+            FileLock lock = lock();
+            try {
+                Object key = currentFileKey();
+                if (key != null && !key.equals(fileKey)) {
+                    // Другой процесс сжал журнал и подменил файл
+                    channel.close();
+                    channel = PrivateFiles.open(file.toPath(), StandardOpenOption.CREATE,
+                            StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    fileKey = currentFileKey();
+                }
+                channel.position(channel.size());
+                return lock;
+            } catch (IOException e) {
+                lock.release();
+                throw e;
+            }
+        } catch (IOException e) {
+            log.error("Write failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void endWrite(FileLock lock) {
+        try {
+            lock.release();
+        } catch (IOException e) {
+            log.warn("Unlock failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Берет блокировку журнала, повторяя попытки, пока она занята другим процессом
+     */
+    private FileLock lock() throws IOException {
+        long deadline = System.currentTimeMillis() + LOCK_WAIT_MS;
+        while (true) {
+            try {
+                FileLock lock = lockChannel.tryLock();
+                if (lock != null) {
+                    return lock;
+                }
+            } catch (OverlappingFileLockException e) {
+                // журнал открыт еще одним хранилищем в этом же процессе
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Store is locked by another process: " + file);
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for store lock");
+            }
+        }
+    }
+
+    private Object currentFileKey() throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+    }
+
+    private boolean write(byte type, String json, Record record) {
+        byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).put(type).put(payload).flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (record != null) {
+                record.recordBytes = HEADER_BYTES + payload.length;
+                liveBytes += record.recordBytes;
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Write failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Переписывает журнал, оставляя только живые записи, и атомарно подменяет файл.
+     * Вызывается при загрузке, под блокировкой журнала.
+     */
+    private void compact() throws IOException {
+        File compacted = new File(file.getPath() + ".compact");
+        Map<String, StoredAccount> liveAccounts = new LinkedHashMap<>(accounts);
+        List<StoredMessage> liveMessages = new ArrayList<>();
+        for (Map<String, StoredMessage> accountMessages : messages.values()) {
+            liveMessages.addAll(accountMessages.values());
+        }
+
+        channel.close();
+        channel = PrivateFiles.open(compacted.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        liveBytes = 0;
+        for (StoredAccount account : liveAccounts.values()) {
+            write(TYPE_ACCOUNT, gson.toJson(account), account);
+        }
+        for (StoredMessage message : liveMessages) {
+            write(TYPE_MESSAGE, gson.toJson(message), message);
+        }
+        channel.force(true);
+        channel.close();
+
+        Files.move(compacted.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = PrivateFiles.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        fileKey = currentFileKey();
+        log.info("Compacted to " + channel.size() + " bytes");
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+            lockChannel.close();
+        } catch (IOException e) {
+            log.warn("Close failed: " + e.getMessage());
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private abstract static class Record {
+        transient int recordBytes;
+    }
+
+    private static final class StoredAccount extends Record {
+        String email;
+        String password;
+        String provider;
+        String token;
+        String accountId;
+        long createdAt;
+    }
+
+    private static final class StoredMessage extends Record {
+        String account;
+        String id;
+        String from;
+        String subject;
+        String body;
+        long date;
+    }
+}
@@ -0,0 +1,120 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Реестр метрик приложения. Каждая конечная точка и каждый сервис получают
+ * свой MBean в домене "tempemail" при первом обращении, поэтому метрики
+ * видны в jconsole/VisualVM без дополнительной настройки.
+ */
+public final class Metrics {
+    private static final Log log = Log.get(Metrics.class);
+
+    private static final String DOMAIN = "tempemail";
+    private static final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private static final Map<String, Poll> polls = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static Endpoint endpoint(String provider, String endpoint) {
+        return endpoints.computeIfAbsent(provider + " " + endpoint, k -> {
+            Endpoint metrics = new Endpoint(provider, endpoint);
+            register("type=HttpEndpoint,provider=" + ObjectName.quote(provider) +
+                    ",endpoint=" + ObjectName.quote(endpoint), metrics);
+            return metrics;
+        });
+    }
+
+    public static Poll poll(String provider) {
+        return polls.computeIfAbsent(provider, k -> {
+            Poll metrics = new Poll(provider);
+            register("type=Poll,provider=" + ObjectName.quote(provider), metrics);
+            return metrics;
+        });
+    }
+
+    private static void register(String properties, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(mbean, name);
+            }
+        } catch (JMException e) {
+            log.warn("Cannot register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Метрики HTTP-запросов к конечной точке (заполняются из {@link HttpMetricsListener})
+     */
+    public static final class Endpoint implements EndpointMetricsMXBean {
+        private final String provider;
+        private final String endpoint;
+        final LongAdder requests = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder bytesIn = new LongAdder();
+        final Histogram dns = Histogram.latency();
+        final Histogram connect = Histogram.latency();
+        final Histogram tls = Histogram.latency();
+        final Histogram timeToFirstByte = Histogram.latency();
+        final Histogram total = Histogram.latency();
+
+        Endpoint(String provider, String endpoint) {
+            this.provider = provider;
+            this.endpoint = endpoint;
+        }
+
+        @Override public String getProvider() { return provider; }
+        @Override public String getEndpoint() { return endpoint; }
+        @Override public long getRequests() { return requests.sum(); }
+        @Override public long getFailures() { return failures.sum(); }
+        @Override public long getBytesIn() { return bytesIn.sum(); }
+        @Override public HistogramSnapshot getDns() { return dns.snapshot(); }
+        @Override public HistogramSnapshot getConnect() { return connect.snapshot(); }
+        @Override public HistogramSnapshot getTls() { return tls.snapshot(); }
+        @Override public HistogramSnapshot getTimeToFirstByte() { return timeToFirstByte.snapshot(); }
+        @Override public HistogramSnapshot getTotal() { return total.snapshot(); }
+    }
+
+    /**
+     * Метрики циклов синхронизации (заполняются из EmailService)
+     */
+    public static final class Poll implements PollMetricsMXBean {
+        private final String provider;
+        private final LongAdder polls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder messages = new LongAdder();
+        private final Histogram duration = Histogram.latency();
+        private final Histogram messagesPerPoll = Histogram.counts();
+
+        Poll(String provider) {
+            this.provider = provider;
+        }
+
+        public void recordSuccess(long durationNanos, int messageCount) {
+            polls.increment();
+            messages.add(messageCount);
+            duration.recordNanos(durationNanos);
+            messagesPerPoll.record(messageCount);
+        }
+
+        public void recordFailure(long durationNanos) {
+            polls.increment();
+            failures.increment();
+            duration.recordNanos(durationNanos);
+        }
+
+        @Override public String getProvider() { return provider; }
+        @Override public long getPolls() { return polls.sum(); }
+        @Override public long getFailures() { return failures.sum(); }
+        @Override public long getMessages() { return messages.sum(); }
+        @Override public HistogramSnapshot getDuration() { return duration.snapshot(); }
+        @Override public HistogramSnapshot getMessagesPerPoll() { return messagesPerPoll.snapshot(); }
+    }
+}
@@ -0,0 +1,107 @@
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Параллельная загрузка тел писем через асинхронный диспетчер OkHttp.
+ * Одновременно выполняется не больше maxConcurrency запросов,
+ * результаты возвращаются в том же порядке, что и входные запросы.
+ */
+public class ParallelBodyFetcher {
+    private static final Log log = Log.get(ParallelBodyFetcher.class);
+
+    private final OkHttpClient client;
+    private final int maxConcurrency;
+
+    public ParallelBodyFetcher(OkHttpClient client, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be >= 1: " + maxConcurrency);
+        }
+        this.client = client;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Выполняет запросы и возвращает тела писем по порядку.
+     * Для неудавшихся запросов в соответствующей позиции будет null.
+     */
+    public List<String> fetchAll(List<Request> requests, BodyParser parser) throws InterruptedException {
+        int count = requests.size();
+        if (count == 0) {
+            return new ArrayList<>();
+        }
+
+        AtomicReferenceArray<String> results = new AtomicReferenceArray<>(count);
+        CountDownLatch done = new CountDownLatch(count);
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<Call> calls = new ArrayList<>(count);
+
+        try {
+            for (int i = 0; i < count; i++) {
+                permits.acquire();
+
+                final int index = i;
+                Call call = client.newCall(requests.get(i));
+                calls.add(call);
+                call.enqueue(new Callback() {
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        try (Response r = response) {
+                            if (r.isSuccessful()) {
+                                results.set(index, parser.parse(r));
+                            } else {
+                                log.warn("Body request failed: " + r.code() + " " + call.request().url());
+                            }
+                        } catch (Exception e) {
+                            log.warn("Error reading message body: " + e.getMessage());
+                        } finally {
+                            permits.release();
+                            done.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        log.warn("Body request error: " + e.getMessage());
+                        permits.release();
+                        done.countDown();
+                    }
+                });
+            }
+
+            done.await();
+        } catch (InterruptedException e) {
+            for (Call call : calls) {
+                call.cancel();
+            }
+            throw e;
+        }
+
+        String[] ordered = new String[count];
+        for (int i = 0; i < count; i++) {
+            ordered[i] = results.get(i);
+        }
+        return Arrays.asList(ordered);
+    }
+
+    /**
+     * Извлекает текст письма из успешного ответа сервиса
+     */
+    public interface BodyParser {
+        String parse(Response response) throws IOException;
+    }
+}
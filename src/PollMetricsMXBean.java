@@ -0,0 +1,16 @@
+/**
+ * Метрики циклов синхронизации ящиков одного сервиса
+ */
+public interface PollMetricsMXBean {
+    String getProvider();
+
+    long getPolls();
+
+    long getFailures();
+
+    long getMessages();
+
+    HistogramSnapshot getDuration();
+
+    HistogramSnapshot getMessagesPerPoll();
+}
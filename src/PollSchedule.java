@@ -0,0 +1,99 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Адаптивное расписание опроса одного ящика.
+ * Сразу после создания и после новых писем ящик опрашивается часто,
+ * простаивающий - все реже, а при ответах 429/5xx интервал растет экспоненциально.
+ * К каждому интервалу добавляется случайный разброс, чтобы ящики не опрашивались синхронно.
+ * Также не дает запустить второй опрос, пока предыдущий еще выполняется.
+ */
+public class PollSchedule {
+    private static final long HOT_INTERVAL_MS = Long.getLong("tempemail.poll.hot.ms", 3_000);
+    private static final long HOT_WINDOW_MS = 120_000;
+    private static final long IDLE_BASE_MS = Long.getLong("tempemail.poll.idle.ms", 15_000);
+    private static final long IDLE_MAX_MS = Long.getLong("tempemail.poll.idle.max.ms", 120_000);
+    private static final long ERROR_BASE_MS = 15_000;
+    private static final long ERROR_MAX_MS = 300_000;
+    private static final long THROTTLED_BASE_MS = 30_000;
+    private static final long THROTTLED_MAX_MS = 900_000;
+    // Ящик с активным push-потоком опрашивается только как страховка
+    private static final long PUSH_SAFETY_MS = 300_000;
+    private static final double JITTER = 0.2;
+
+    private long lastActivity = System.currentTimeMillis();
+    private int idlePolls;
+    private int consecutiveErrors;
+    private int lastErrorStatus;
+    private boolean inFlight;
+    private boolean rerunRequested;
+
+    /**
+     * Пытается начать опрос; false, если предыдущий еще не завершен
+     */
+    public synchronized boolean tryBegin() {
+        if (inFlight) {
+            rerunRequested = true;
+            return false;
+        }
+        inFlight = true;
+        return true;
+    }
+
+    /**
+     * Завершает опрос; true, если за время выполнения запросили еще один
+     */
+    public synchronized boolean end() {
+        inFlight = false;
+        boolean rerun = rerunRequested;
+        rerunRequested = false;
+        return rerun;
+    }
+
+    public synchronized void onSuccess(int newMessages) {
+        consecutiveErrors = 0;
+        lastErrorStatus = 0;
+        if (newMessages > 0) {
+            markActive();
+        } else {
+            idlePolls++;
+        }
+    }
+
+    /**
+     * @param statusCode HTTP-код ответа или 0 для сетевой ошибки
+     */
+    public synchronized void onError(int statusCode) {
+        consecutiveErrors++;
+        lastErrorStatus = statusCode;
+    }
+
+    /**
+     * Ящик только что создан или в нем появилась активность
+     */
+    public synchronized void markActive() {
+        lastActivity = System.currentTimeMillis();
+        idlePolls = 0;
+    }
+
+    public synchronized long nextDelayMillis(boolean pushConnected) {
+        long delay;
+        if (consecutiveErrors > 0) {
+            boolean throttled = lastErrorStatus == 429 || lastErrorStatus >= 500;
+            long base = throttled ? THROTTLED_BASE_MS : ERROR_BASE_MS;
+            long max = throttled ? THROTTLED_MAX_MS : ERROR_MAX_MS;
+            delay = Math.min(max, base << Math.min(consecutiveErrors - 1, 16));
+        } else if (pushConnected) {
+            delay = PUSH_SAFETY_MS;
+        } else if (System.currentTimeMillis() - lastActivity < HOT_WINDOW_MS) {
+            delay = HOT_INTERVAL_MS;
+        } else {
+            delay = (long) Math.min(IDLE_MAX_MS, IDLE_BASE_MS * Math.pow(1.5, idlePolls));
+        }
+        return withJitter(delay);
+    }
+
+    private static long withJitter(long delay) {
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-JITTER, JITTER);
+        return Math.max(1, (long) (delay * factor));
+    }
+}
@@ -0,0 +1,79 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Файлы и каталоги, доступные только владельцу: в них лежат пароли и токены ящиков
+ * и тексты писем. На POSIX-системах каталоги создаются с правами rwx------, файлы -
+ * rw-------, а созданные прежними версиями права ужесточаются при открытии. На остальных
+ * системах доступ ограничивается через флаги java.io.File.
+ */
+public final class PrivateFiles {
+    private static final Log log = Log.get(PrivateFiles.class);
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    private static final Set<PosixFilePermission> DIRECTORY = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> FILE = PosixFilePermissions.fromString("rw-------");
+
+    private PrivateFiles() {
+    }
+
+    /**
+     * Создает каталог (с недостающими родителями) или ужесточает права существующего
+     */
+    public static void createDirectories(File dir) throws IOException {
+        Path path = dir.toPath();
+        if (!Files.isDirectory(path)) {
+            if (POSIX) {
+                Files.createDirectories(path, PosixFilePermissions.asFileAttribute(DIRECTORY));
+            } else {
+                Files.createDirectories(path);
+            }
+        }
+        restrict(path, DIRECTORY);
+    }
+
+    /**
+     * Открывает файл; новый создается сразу с правами только для владельца
+     */
+    public static FileChannel open(Path path, OpenOption... options) throws IOException {
+        Set<OpenOption> optionSet = new HashSet<>(Arrays.asList(options));
+        FileChannel channel = POSIX
+                ? FileChannel.open(path, optionSet, PosixFilePermissions.asFileAttribute(FILE))
+                : FileChannel.open(path, optionSet, new FileAttribute<?>[0]);
+        restrict(path, FILE);
+        return channel;
+    }
+
+    private static void restrict(Path path, Set<PosixFilePermission> permissions) {
+        try {
+            if (POSIX) {
+                if (!Files.getPosixFilePermissions(path).equals(permissions)) {
+                    Files.setPosixFilePermissions(path, permissions);
+                }
+                return;
+            }
+            File file = path.toFile();
+            boolean restricted = file.setReadable(false, false) & file.setReadable(true, true)
+                    & file.setWritable(false, false) & file.setWritable(true, true);
+            if (file.isDirectory()) {
+                restricted &= file.setExecutable(false, false) & file.setExecutable(true, true);
+            }
+            if (!restricted) {
+                log.warn("Could not restrict access to " + path);
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("Could not restrict access to " + path + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+import java.io.IOException;
+
+/**
+ * Ошибка сервиса временной почты с HTTP-кодом ответа (0, если ответа не было)
+ */
+public class ProviderException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String provider;
+    private final int statusCode;
+
+    public ProviderException(String provider, int statusCode, String message) {
+        super(provider + ": " + message + (statusCode > 0 ? " (HTTP " + statusCode + ")" : ""));
+        this.provider = provider;
+        this.statusCode = statusCode;
+    }
+
+    public String getProvider() { return provider; }
+    public int getStatusCode() { return statusCode; }
+}
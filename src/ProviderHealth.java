@@ -0,0 +1,160 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Здоровье сервисов временной почты: скользящая средняя задержки (EWMA), доля ошибок
+ * и автомат circuit breaker (CLOSED -> OPEN -> HALF_OPEN). Заполняется перехватчиком
+ * {@link HealthInterceptor} по каждому HTTP-запросу; создание ящиков и опрос
+ * пропускают сервисы с открытой цепью и предпочитают самые быстрые.
+ */
+public class ProviderHealth {
+    private static final Log log = Log.get(ProviderHealth.class);
+
+    private static final double ALPHA = 0.2;
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final double ERROR_RATE_THRESHOLD = 0.5;
+    private static final int MIN_SAMPLES = 10;
+    private static final long BASE_COOLDOWN_MS = 30_000;
+    private static final long MAX_COOLDOWN_MS = 300_000;
+    // Если результат пробного запроса так и не пришел (например, ответ из кэша), пускаем новый
+    private static final long PROBE_TIMEOUT_MS = 60_000;
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * Можно ли сейчас обращаться к сервису. После паузы открытая цепь
+     * пропускает один пробный запрос (HALF_OPEN).
+     */
+    public boolean allowRequest(String provider) {
+        return statsFor(provider).allowRequest(System.currentTimeMillis());
+    }
+
+    public void recordSuccess(String provider, long latencyMillis) {
+        statsFor(provider).record(true, latencyMillis, System.currentTimeMillis());
+    }
+
+    public void recordFailure(String provider, long latencyMillis) {
+        statsFor(provider).record(false, latencyMillis, System.currentTimeMillis());
+    }
+
+    /**
+     * Проверка без побочных эффектов: цепь закрыта или пауза уже истекла
+     */
+    public boolean isAvailable(String provider) {
+        return statsFor(provider).isAvailable(System.currentTimeMillis());
+    }
+
+    public State getState(String provider) {
+        return statsFor(provider).state;
+    }
+
+    /**
+     * Средняя задержка в миллисекундах; 0, если запросов еще не было
+     */
+    public double getLatencyMillis(String provider) {
+        return statsFor(provider).latencyEwma;
+    }
+
+    public double getErrorRate(String provider) {
+        return statsFor(provider).errorRateEwma;
+    }
+
+    public String describe(String provider) {
+        Stats s = statsFor(provider);
+        synchronized (s) {
+            return String.format("%s: %s, latency %.0f ms, errors %.0f%%",
+                    provider, s.state, s.latencyEwma, s.errorRateEwma * 100);
+        }
+    }
+
+    private Stats statsFor(String provider) {
+        return stats.computeIfAbsent(provider, Stats::new);
+    }
+
+    private static final class Stats {
+        final String provider;
+        volatile State state = State.CLOSED;
+        double latencyEwma;
+        double errorRateEwma;
+        int samples;
+        int consecutiveFailures;
+        long openedAt;
+        long cooldownMillis = BASE_COOLDOWN_MS;
+        boolean probeInFlight;
+        long probeStartedAt;
+
+        Stats(String provider) {
+            this.provider = provider;
+        }
+
+        synchronized boolean isAvailable(long now) {
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    return now - openedAt >= cooldownMillis;
+                default:
+                    return !probeInFlight || now - probeStartedAt >= PROBE_TIMEOUT_MS;
+            }
+        }
+
+        synchronized boolean allowRequest(long now) {
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (now - openedAt < cooldownMillis) {
+                        return false;
+                    }
+                    state = State.HALF_OPEN;
+                    probeInFlight = true;
+                    probeStartedAt = now;
+                    return true;
+                default:
+                    // HALF_OPEN: пока пробный запрос не вернулся, остальные не пускаем
+                    if (probeInFlight && now - probeStartedAt < PROBE_TIMEOUT_MS) {
+                        return false;
+                    }
+                    probeInFlight = true;
+                    probeStartedAt = now;
+                    return true;
+            }
+        }
+
+        synchronized void record(boolean success, long latencyMillis, long now) {
+            latencyEwma = samples == 0 ? latencyMillis : ALPHA * latencyMillis + (1 - ALPHA) * latencyEwma;
+            errorRateEwma = ALPHA * (success ? 0 : 1) + (1 - ALPHA) * errorRateEwma;
+            samples++;
+
+            if (success) {
+                consecutiveFailures = 0;
+                if (state != State.CLOSED) {
+                    log.info(provider + " recovered, circuit closed");
+                }
+                state = State.CLOSED;
+                cooldownMillis = BASE_COOLDOWN_MS;
+                probeInFlight = false;
+                return;
+            }
+
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN) {
+                // Пробный запрос провалился - открываем снова с удвоенной паузой
+                cooldownMillis = Math.min(MAX_COOLDOWN_MS, cooldownMillis * 2);
+                open(now);
+            } else if (state == State.CLOSED && (consecutiveFailures >= FAILURE_THRESHOLD
+                    || (samples >= MIN_SAMPLES && errorRateEwma > ERROR_RATE_THRESHOLD))) {
+                open(now);
+            }
+        }
+
+        private void open(long now) {
+            log.warn(provider + " circuit opened for " + cooldownMillis / 1000 + "s");
+            state = State.OPEN;
+            openedAt = now;
+            probeInFlight = false;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перехватчик HTTP-клиента, ограничивающий частоту запросов к хостам сервисов
+ * квотой каждого сервиса ({@link MailProvider#getRequestsPerSecond()}).
+ * Ответы 429 и 503 с Retry-After приостанавливают хост; интерактивный запрос
+ * после 429 повторяется один раз, фоновый возвращает 429 вызывающему,
+ * чтобы опрос отступил. Токен берет сетевой перехватчик ({@link #network()}),
+ * поэтому ответы из кэша в памяти и на диске токен не тратят.
+ */
+public class RateLimitInterceptor implements Interceptor {
+    private static final Log log = Log.get(RateLimitInterceptor.class);
+
+    // Пауза после 429 без Retry-After
+    private static final long DEFAULT_PAUSE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, String> providersByHost;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final long maxWaitNanos;
+    private final Interceptor network = this::acquireToken;
+
+    public RateLimitInterceptor(Map<String, String> providersByHost, long maxWaitMillis) {
+        this.providersByHost = providersByHost;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * Задает квоту хоста; повторная регистрация хоста ничего не меняет
+     */
+    public void register(String host, double requestsPerSecond, double burst) {
+        buckets.computeIfAbsent(host, h -> new TokenBucket(requestsPerSecond, burst));
+    }
+
+    /**
+     * Сетевой перехватчик, который берет токен перед отправкой запроса в сеть
+     * ({@code addNetworkInterceptor}); сам этот перехватчик подключается как обычный
+     * и обрабатывает 429 и Retry-After
+     */
+    public Interceptor network() {
+        return network;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        TokenBucket bucket = buckets.get(request.url().host());
+        if (bucket == null) {
+            return chain.proceed(request);
+        }
+
+        RequestPriority priority = RequestPriority.of(request);
+        Response response = chain.proceed(request);
+
+        int code = response.code();
+        if (code != 429 && code != 503) {
+            return response;
+        }
+        long retryAfter = retryAfterNanos(response.header("Retry-After"));
+        if (retryAfter < 0) {
+            if (code == 503) {
+                return response; // сбой сервиса без паузы - дело ProviderHealth
+            }
+            retryAfter = DEFAULT_PAUSE_NANOS;
+        }
+        long pause = retryAfter;
+        bucket.pause(pause);
+        log.info(() -> provider(request) + " asked to slow down (HTTP " + code + "), pausing "
+                + TimeUnit.NANOSECONDS.toMillis(pause) + " ms");
+
+        if (code == 429 && priority == RequestPriority.INTERACTIVE && pause <= maxWaitNanos) {
+            response.close();
+            return chain.proceed(request); // токен после паузы возьмет сетевой перехватчик
+        }
+        return response;
+    }
+
+    private Response acquireToken(Chain chain) throws IOException {
+        Request request = chain.request();
+        TokenBucket bucket = buckets.get(request.url().host());
+        if (bucket != null) {
+            acquire(bucket, RequestPriority.of(request), request);
+        }
+        return chain.proceed(request);
+    }
+
+    private void acquire(TokenBucket bucket, RequestPriority priority, Request request) throws IOException {
+        try {
+            if (!bucket.acquire(priority, maxWaitNanos)) {
+                throw new RateLimitedException(provider(request), "rate limited, retry in "
+                        + TimeUnit.NANOSECONDS.toSeconds(bucket.getPauseRemainingNanos()) + " s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for rate limit");
+        }
+    }
+
+    private String provider(Request request) {
+        String host = request.url().host();
+        return providersByHost.getOrDefault(host, host);
+    }
+
+    /**
+     * Retry-After в секундах или HTTP-датой; -1, если заголовка нет или он не разобран
+     */
+    static long retryAfterNanos(String header) {
+        if (header == null || header.isEmpty()) {
+            return -1;
+        }
+        String value = header.trim();
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            // не число - пробуем дату
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toNanos());
+        } catch (DateTimeParseException | ArithmeticException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * Запрос не отправлен: локальная квота сервиса исчерпана ({@link RateLimitInterceptor}).
+ * Для вызывающего это тот же 429, но сервис о запросе не знает, поэтому
+ * {@link HealthInterceptor} не считает его сбоем.
+ */
+public class RateLimitedException extends ProviderException {
+    private static final long serialVersionUID = 1L;
+
+    public RateLimitedException(String provider, String message) {
+        super(provider, 429, message);
+    }
+}
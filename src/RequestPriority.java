@@ -0,0 +1,42 @@
+import okhttp3.Request;
+
+/**
+ * Приоритет запроса к сервису при ограничении частоты ({@link RateLimitInterceptor}).
+ * Асинхронные запросы помечаются тегом {@code request.tag(RequestPriority.class)},
+ * синхронные без тега получают приоритет потока, из которого выполняются.
+ */
+public enum RequestPriority {
+    /**
+     * Запрос, которого ждет пользователь (открытие письма, создание ящика)
+     */
+    INTERACTIVE,
+
+    /**
+     * Фоновый опрос и предзагрузка - уступает интерактивным запросам
+     */
+    BACKGROUND;
+
+    private static final ThreadLocal<RequestPriority> current = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    /**
+     * Приоритет запросов текущего потока
+     */
+    public static RequestPriority current() {
+        return current.get();
+    }
+
+    /**
+     * Задает приоритет запросов текущего потока (например, для потоков опроса)
+     */
+    public static void setCurrent(RequestPriority priority) {
+        current.set(priority);
+    }
+
+    /**
+     * Приоритет запроса: тег, а без него - приоритет текущего потока
+     */
+    public static RequestPriority of(Request request) {
+        RequestPriority priority = request.tag(RequestPriority.class);
+        return priority != null ? priority : current();
+    }
+}
@@ -0,0 +1,98 @@
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Долгоживущее подключение к потоку server-sent events (например, Mercure hub).
+ * Читает поток в отдельном фоновом потоке и передает каждое событие слушателю.
+ * Переподключением занимается вызывающая сторона - по {@link Listener#onClosed}.
+ */
+public class SseSubscription implements Closeable {
+    private final Call call;
+    private final Listener listener;
+    private volatile boolean connected;
+    private volatile boolean closed;
+
+    public SseSubscription(OkHttpClient client, Request request, Listener listener) {
+        // Поток событий может молчать сколько угодно - таймаут чтения отключаем
+        OkHttpClient streamClient = client.newBuilder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .build();
+        this.call = streamClient.newCall(request.newBuilder()
+                .header("Accept", "text/event-stream")
+                .build());
+        this.listener = listener;
+    }
+
+    public SseSubscription start() {
+        Thread reader = new Thread(this::readStream, "sse-" + call.request().url().host());
+        reader.setDaemon(true);
+        reader.start();
+        return this;
+    }
+
+    private void readStream() {
+        Throwable error = null;
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful()) {
+                throw new ProviderException(call.request().url().host(), response.code(), "event stream rejected");
+            }
+
+            connected = true;
+            listener.onOpen();
+
+            BufferedSource source = response.body().source();
+            StringBuilder data = new StringBuilder();
+            String line;
+            while (!closed && (line = source.readUtf8Line()) != null) {
+                if (line.isEmpty()) {
+                    // Пустая строка завершает событие
+                    if (data.length() > 0) {
+                        listener.onEvent(data.toString());
+                        data.setLength(0);
+                    }
+                } else if (line.startsWith("data:")) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(line.startsWith("data: ") ? line.substring(6) : line.substring(5));
+                }
+                // Комментарии (":"), id:, event: и retry: не используются
+            }
+        } catch (Exception e) {
+            error = e;
+        } finally {
+            connected = false;
+        }
+
+        if (!closed) {
+            listener.onClosed(error);
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        call.cancel();
+    }
+
+    public interface Listener {
+        default void onOpen() { }
+
+        void onEvent(String data);
+
+        /**
+         * Поток оборвался не по нашей инициативе; error == null, если сервер закрыл его штатно
+         */
+        void onClosed(Throwable error);
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Состояние инкрементальной синхронизации одного почтового ящика.
+ * Хранит уже известные ID сообщений вместе с загруженными письмами,
+ * чтобы при очередном опросе скачивать тела только для новых писем.
+ */
+public class SyncState {
+    private final Map<String, EmailMessage> knownMessages = new ConcurrentHashMap<>();
+    private final AtomicLong addedCount = new AtomicLong();
+
+    public boolean isKnown(String messageId) {
+        return knownMessages.containsKey(messageId);
+    }
+
+    public EmailMessage get(String messageId) {
+        return knownMessages.get(messageId);
+    }
+
+    public void put(EmailMessage message) {
+        if (knownMessages.put(message.getId(), message) == null) {
+            addedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Сколько новых сообщений было добавлено за все время - для подсчета новых писем за опрос
+     */
+    public long getAddedCount() {
+        return addedCount.get();
+    }
+
+    public void remove(String messageId) {
+        knownMessages.remove(messageId);
+    }
+
+    /**
+     * Удаляет из состояния сообщения, которых больше нет на сервере
+     */
+    public void retainOnly(Collection<String> currentIds) {
+        Set<String> keep = new HashSet<>(currentIds);
+        knownMessages.keySet().removeIf(id -> !keep.contains(id));
+    }
+
+    public int size() {
+        return knownMessages.size();
+    }
+
+    public void clear() {
+        knownMessages.clear();
+    }
+}
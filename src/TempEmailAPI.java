@@ -1,412 +1,543 @@
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import okhttp3.*;
 
+import java.io.File;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Random;
-import java.util.UUID;
-
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Точка входа для работы с сервисами временной почты. Сами сервисы реализуют
+ * {@link MailProvider} и подключаются через ServiceLoader; каждый аккаунт помнит
+ * свой сервис в {@link MailSession}, поэтому маршрутизация - один поиск по имени.
+ */
 public class TempEmailAPI {
-    private static final OkHttpClient client = new OkHttpClient();
-    private static final Gson gson = new Gson();
-    private static final Random random = new Random();
+    private static final Log log = Log.get(TempEmailAPI.class);
+
+    // Максимум одновременных запросов при параллельной загрузке тел писем
+    private static final int BODY_FETCH_CONCURRENCY = Integer.getInteger("tempemail.fetch.concurrency", 8);
+    // Сколько ждать ответа сервиса при создании ящика, прежде чем параллельно запустить следующий.
+    // Отрицательное значение отключает параллельный запуск.
+    private static final long HEDGE_DELAY_MS = Long.getLong("tempemail.create.hedge.ms", 2000);
+
+    // Всплеск запросов к хосту сверх квоты (в секундах квоты) и максимальное ожидание очереди
+    private static final double RATE_LIMIT_BURST_SECONDS =
+            Double.parseDouble(System.getProperty("tempemail.ratelimit.burst.seconds", "1"));
+    private static final long RATE_LIMIT_MAX_WAIT_MS = Long.getLong("tempemail.ratelimit.max.wait.ms", 10000);
+
+    // Дисковый HTTP-кэш и кэш неизменяемых ответов в памяти
+    private static final File CACHE_DIR = new File(System.getProperty("tempemail.cache.dir",
+            System.getProperty("user.home") + File.separator + ".tempemail" + File.separator + "http-cache"));
+    private static final long DISK_CACHE_BYTES = Long.getLong("tempemail.cache.disk.mb", 50) * 1024 * 1024;
+    private static final long MEMORY_CACHE_BYTES = Long.getLong("tempemail.cache.memory.mb", 8) * 1024 * 1024;
+
+    private static final Cache diskCache = createDiskCache();
+    private static final MemoryResponseCache memoryCache = new MemoryResponseCache(MEMORY_CACHE_BYTES);
+    private static final CacheControlInterceptor cacheControl = new CacheControlInterceptor();
+
+    // Здоровье сервисов, заполняется по каждому запросу к их хостам
+    private static final ProviderHealth health = new ProviderHealth();
+    private static final Map<String, String> providerHosts = new ConcurrentHashMap<>();
+    private static final RateLimitInterceptor rateLimiter = new RateLimitInterceptor(providerHosts, RATE_LIMIT_MAX_WAIT_MS);
+
+    private static final OkHttpClient client = createHttpClient();
+
+    // Клиент, ограничитель частоты и учет здоровья общие для процесса, поэтому подключенные
+    // сервисы и квоты их хостов регистрируются один раз, а не каждым экземпляром
+    private static final List<MailProvider> installedProviders = loadProviders();
+
+    static {
+        for (MailProvider provider : installedProviders) {
+            registerHosts(provider);
+        }
+    }
 
-    // Токены и сессии для разных сервисов
-    private String mailTMToken = null;
-    private String guerrillaSID = null;
+    private final List<MailProvider> providers;
+    private final Map<String, MailProvider> providersByName = new LinkedHashMap<>();
+    private final ParallelBodyFetcher bodyFetcher;
+    private final ExecutorService creationExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "account-create");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TempEmailAPI() {
+        this(BODY_FETCH_CONCURRENCY);
+    }
 
-    public EmailAccount createRandomEmail() {
-        System.out.println("=== Creating REAL temporary email ===");
+    public TempEmailAPI(int bodyFetchConcurrency) {
+        this(installedProviders, bodyFetchConcurrency);
+    }
 
-        // Пробуем сервисы в порядке надежности
-        EmailAccount account;
+    /**
+     * API поверх заданных сервисов. Квоты и учет здоровья по хостам действуют только
+     * для сервисов по умолчанию (ServiceLoader); свои сервисы (тесты, бенчмарки) работают без них.
+     */
+    public TempEmailAPI(List<MailProvider> providers, int bodyFetchConcurrency) {
+        List<MailProvider> sorted = new ArrayList<>(providers);
+        sorted.sort(Comparator.comparingInt(MailProvider::getPriority));
+        this.providers = Collections.unmodifiableList(sorted);
+        for (MailProvider provider : sorted) {
+            providersByName.put(provider.getName(), provider);
+        }
+        this.bodyFetcher = new ParallelBodyFetcher(client, bodyFetchConcurrency);
+    }
 
-        // 1. Mail.tm - основной сервис
-        account = createMailTMAccount();
-        if (account != null) {
-            System.out.println("✓ Successfully created Mail.tm account: " + account.getEmail());
-            return account;
+    private static void registerHosts(MailProvider provider) {
+        double rate = Double.parseDouble(System.getProperty("tempemail.ratelimit." + provider.getName(),
+                String.valueOf(provider.getRequestsPerSecond())));
+        for (String host : provider.getHosts()) {
+            providerHosts.put(host, provider.getName());
+            rateLimiter.register(host, rate, rate * RATE_LIMIT_BURST_SECONDS);
         }
+    }
 
-        // 2. GuerrillaMail - резервный сервис
-        account = createGuerrillaMailAccount();
-        if (account != null) {
-            System.out.println("✓ Successfully created GuerrillaMail account: " + account.getEmail());
-            return account;
+    /**
+     * В кэше ответы сервисов с письмами и токенами: каталог доступен только владельцу,
+     * поэтому и файлы, которые OkHttp создает внутри, другим пользователям не видны
+     */
+    private static Cache createDiskCache() {
+        try {
+            PrivateFiles.createDirectories(CACHE_DIR);
+        } catch (IOException e) {
+            log.warn("Cannot create HTTP cache directory " + CACHE_DIR + ": " + e.getMessage());
         }
+        return new Cache(CACHE_DIR, DISK_CACHE_BYTES);
+    }
 
-        System.out.println("✗ All real services failed");
-        return null;
+    private static OkHttpClient createHttpClient() {
+        // По умолчанию OkHttp выполняет не более 5 асинхронных запросов на хост
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(Math.max(5, BODY_FETCH_CONCURRENCY));
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .cache(diskCache)
+                .addInterceptor(memoryCache)
+                .addInterceptor(rateLimiter)
+                .addInterceptor(new HealthInterceptor(health, providerHosts))
+                .addNetworkInterceptor(rateLimiter.network())
+                .addNetworkInterceptor(cacheControl)
+                .eventListenerFactory(HttpMetricsListener.factory(providerHosts))
+                .build();
     }
 
     /**
-     * Mail.tm API - согласно документации https://docs.mail.tm/
+     * Счетчики попаданий в кэш в памяти и на диске и количество сетевых запросов
      */
-    private EmailAccount createMailTMAccount() {
-        try {
-            // 1. Получаем доступные домены
-            String domain = getMailTMDomain();
-            if (domain == null) {
-                System.err.println("No Mail.tm domains available");
-                return null;
-            }
+    public static HttpCacheStats getCacheStats() {
+        long notModified = cacheControl.getNotModifiedCount();
+        return new HttpCacheStats(
+                memoryCache.getHitCount(),
+                memoryCache.getMissCount(),
+                // hitCount OkHttp включает и перепроверенные через сеть (304) ответы
+                diskCache.hitCount() - notModified,
+                cacheControl.getNetworkCount(),
+                notModified);
+    }
 
-            // 2. Создаем случайный адрес и пароль
-            String address = generateRandomUsername() + "@" + domain;
-            String password = UUID.randomUUID().toString().substring(0, 16);
-
-            // 3. Создаем аккаунт согласно API docs
-            JsonObject accountData = new JsonObject();
-            accountData.addProperty("address", address);
-            accountData.addProperty("password", password);
-
-            RequestBody body = RequestBody.create(
-                    accountData.toString(),
-                    MediaType.parse("application/json")
-            );
-
-            Request createRequest = new Request.Builder()
-                    .url("https://api.mail.tm/accounts")
-                    .post(body)
-                    .header("Content-Type", "application/json")
-                    .header("User-Agent", "TemporaryEmailClient/1.0")
-                    .build();
-
-            Response createResponse = client.newCall(createRequest).execute();
-
-            if (createResponse.code() == 201) {
-                System.out.println("Mail.tm account created: " + address);
-
-                // 4. Получаем токен аутентификации
-                JsonObject tokenData = new JsonObject();
-                tokenData.addProperty("address", address);
-                tokenData.addProperty("password", password);
-
-                RequestBody tokenBody = RequestBody.create(
-                        tokenData.toString(),
-                        MediaType.parse("application/json")
-                );
-
-                Request tokenRequest = new Request.Builder()
-                        .url("https://api.mail.tm/token")
-                        .post(tokenBody)
-                        .header("Content-Type", "application/json")
-                        .build();
-
-                Response tokenResponse = client.newCall(tokenRequest).execute();
-
-                if (tokenResponse.isSuccessful()) {
-                    String tokenResponseBody = tokenResponse.body().string();
-                    JsonObject tokenJson = JsonParser.parseString(tokenResponseBody).getAsJsonObject();
-                    mailTMToken = tokenJson.get("token").getAsString();
-
-                    EmailAccount account = new EmailAccount(address, password);
-                    account.setPassword(mailTMToken); // Сохраняем токен
-                    return account;
-                }
-            } else {
-                System.err.println("Mail.tm account creation failed: " + createResponse.code());
-                if (createResponse.body() != null) {
-                    System.err.println("Response: " + createResponse.body().string());
-                }
-            }
+    /**
+     * Общий HTTP-клиент для всех сервисов
+     */
+    public static OkHttpClient httpClient() {
+        return client;
+    }
 
-        } catch (Exception e) {
-            System.err.println("Mail.tm error: " + e.getMessage());
-            e.printStackTrace();
+    private static List<MailProvider> loadProviders() {
+        List<MailProvider> found = new ArrayList<>();
+        for (MailProvider provider : ServiceLoader.load(MailProvider.class)) {
+            found.add(provider);
         }
-        return null;
+        if (found.isEmpty()) {
+            // Запуск без META-INF/services (например, из IDE) - встроенные сервисы
+            found.add(new MailTMProvider());
+            found.add(new GuerrillaMailProvider());
+        }
+        return found;
     }
 
-    private String getMailTMDomain() {
-        try {
-            Request request = new Request.Builder()
-                    .url("https://api.mail.tm/domains")
-                    .header("User-Agent", "TemporaryEmailClient/1.0")
-                    .build();
-
-            Response response = client.newCall(request).execute();
-            if (response.isSuccessful()) {
-                String responseBody = response.body().string();
-                JsonObject json = JsonParser.parseString(responseBody).getAsJsonObject();
-                JsonArray domains = json.getAsJsonArray("hydra:member");
-
-                if (domains.size() > 0) {
-                    // Берем первый доступный домен
-                    JsonObject domainObj = domains.get(0).getAsJsonObject();
-                    return domainObj.get("domain").getAsString();
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error getting Mail.tm domains: " + e.getMessage());
-        }
-        return null;
+    public List<MailProvider> getProviders() {
+        return providers;
+    }
+
+    public MailProvider getProvider(String name) {
+        return providersByName.get(name);
+    }
+
+    public static ProviderHealth getHealth() {
+        return health;
     }
 
     /**
-     * GuerrillaMail API - согласно документации https://www.guerrillamail.com/GuerrillaMailAPI.html
+     * Доступные сервисы в порядке предпочтения: сначала с закрытой цепью,
+     * затем самые быстрые по средней задержке, затем по приоритету.
+     * Сервисы с открытой цепью (пауза еще не истекла) пропускаются.
      */
-    private EmailAccount createGuerrillaMailAccount() {
-        try {
-            // Согласно API: f=get_email_address - получаем или создаем email
-            Request request = new Request.Builder()
-                    .url("https://api.guerrillamail.com/ajax.php?f=get_email_address")
-                    .header("User-Agent", "TemporaryEmailClient/1.0")
-                    .build();
-
-            Response response = client.newCall(request).execute();
-            if (response.isSuccessful()) {
-                String jsonResponse = response.body().string();
-                JsonObject jsonObject = JsonParser.parseString(jsonResponse).getAsJsonObject();
-
-                // Согласно API docs, возвращает email_addr и sid_token
-                if (jsonObject.has("email_addr") && jsonObject.has("sid_token")) {
-                    String email = jsonObject.get("email_addr").getAsString();
-                    String sid = jsonObject.get("sid_token").getAsString();
-
-                    guerrillaSID = sid;
-
-                    EmailAccount account = new EmailAccount(email, "");
-                    account.setPassword(sid); // Сохраняем SID как идентификатор сессии
-                    return account;
-                }
+    private List<MailProvider> providersForCreation() {
+        List<MailProvider> available = new ArrayList<>();
+        for (MailProvider provider : providers) {
+            if (health.isAvailable(provider.getName())) {
+                available.add(provider);
             } else {
-                System.err.println("GuerrillaMail account creation failed: " + response.code());
+                log.info("Skipping " + health.describe(provider.getName()));
             }
-        } catch (Exception e) {
-            System.err.println("GuerrillaMail error: " + e.getMessage());
-            e.printStackTrace();
         }
-        return null;
+        available.sort(Comparator
+                .comparingInt((MailProvider p) -> health.getState(p.getName()).ordinal())
+                .thenComparingDouble(p -> health.getLatencyMillis(p.getName()))
+                .thenComparingInt(MailProvider::getPriority));
+        return available;
     }
 
     /**
-     * Получение сообщений - ТОЛЬКО реальные данные из API
+     * Пропускает ли circuit breaker запрос к сервису; если нет - ошибка как от перегруженного сервиса
      */
-    public List<EmailMessage> getMessages(String email) {
-        System.out.println("=== Getting REAL messages for: " + email + " ===");
-
-        List<EmailMessage> messages = new ArrayList<>();
-
-        // Определяем сервис по домену и используем соответствующий API
-        if (email.contains("@mail.tm") || (mailTMToken != null)) {
-            messages = getMailTMMessages();
-        } else if (email.contains("@guerrillamail.com") || email.contains("@grr.la") || email.contains("@sharklasers.com") || (guerrillaSID != null)) {
-            messages = getGuerrillaMessages();
+    private void checkCircuit(MailProvider provider) throws ProviderException {
+        if (!health.allowRequest(provider.getName())) {
+            throw new ProviderException(provider.getName(), 503, "circuit open, provider skipped");
         }
-
-        System.out.println("Found " + messages.size() + " real messages");
-        return messages;
     }
 
-    private List<EmailMessage> getMailTMMessages() {
-        List<EmailMessage> messages = new ArrayList<>();
+    /**
+     * Создает ящик у первого ответившего сервиса. Если сервис с высшим приоритетом
+     * не ответил за HEDGE_DELAY_MS, параллельно запускается следующий; побеждает
+     * первый успешный, ящики проигравших удаляются, как только они будут созданы.
+     */
+    public EmailAccount createRandomEmail() {
+        log.debug("Creating temporary email");
 
-        if (mailTMToken == null) {
-            System.err.println("No Mail.tm token available");
-            return messages;
+        List<MailProvider> candidates = providersForCreation();
+        EmailAccount account;
+        if (HEDGE_DELAY_MS < 0 || candidates.size() < 2) {
+            account = createSequentially(candidates);
+        } else {
+            try {
+                account = createHedged(candidates);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
         }
 
-        try {
-            // Согласно API docs: GET /messages для получения списка сообщений
-            Request request = new Request.Builder()
-                    .url("https://api.mail.tm/messages")
-                    .header("Authorization", "Bearer " + mailTMToken)
-                    .header("User-Agent", "TemporaryEmailClient/1.0")
-                    .build();
-
-            Response response = client.newCall(request).execute();
-
-            if (response.isSuccessful()) {
-                String responseBody = response.body().string();
-                JsonObject json = JsonParser.parseString(responseBody).getAsJsonObject();
-                JsonArray messageArray = json.getAsJsonArray("hydra:member");
-
-                System.out.println("Mail.tm API returned " + messageArray.size() + " messages");
+        if (account == null) {
+            log.error("All services failed to create an account");
+        }
+        return account;
+    }
 
-                for (int i = 0; i < messageArray.size(); i++) {
-                    JsonObject msg = messageArray.get(i).getAsJsonObject();
+    private EmailAccount createSequentially(List<MailProvider> providers) {
+        // Пробуем сервисы в порядке предпочтения
+        for (MailProvider provider : providers) {
+            EmailAccount account = tryCreate(provider);
+            if (account != null) {
+                return account;
+            }
+        }
+        return null;
+    }
 
-                    String id = msg.get("id").getAsString();
-                    JsonObject fromObj = msg.get("from").getAsJsonObject();
-                    String from = fromObj.get("address").getAsString();
-                    String subject = msg.get("subject").getAsString();
+    private EmailAccount createHedged(List<MailProvider> providers) throws InterruptedException {
+        BlockingQueue<CreationAttempt> completed = new LinkedBlockingQueue<>();
+        List<CreationAttempt> started = new ArrayList<>();
+        int next = 0;
+        int finished = 0;
+        CreationAttempt winner = null;
 
-                    // Получаем полный текст сообщения
-                    String body = getMailTMFullMessage(id);
+        started.add(startAttempt(providers.get(next++), completed));
+        try {
+            while (winner == null) {
+                boolean canHedge = next < providers.size();
+                if (finished == started.size()) {
+                    // Все запущенные попытки провалились - сразу пробуем следующий сервис
+                    if (!canHedge) {
+                        break;
+                    }
+                    started.add(startAttempt(providers.get(next++), completed));
+                    continue;
+                }
 
-                    // Парсим дату в формате ISO 8601
-                    String dateStr = msg.get("createdAt").getAsString();
-                    Date date = parseISODate(dateStr);
+                CreationAttempt attempt = canHedge
+                        ? completed.poll(HEDGE_DELAY_MS, TimeUnit.MILLISECONDS)
+                        : completed.take();
+                if (attempt == null) {
+                    // Бюджет ожидания истек - запускаем следующий сервис параллельно
+                    MailProvider hedge = providers.get(next++);
+                    log.info("Account creation is slow, also trying " + hedge.getName());
+                    started.add(startAttempt(hedge, completed));
+                    continue;
+                }
 
-                    messages.add(new EmailMessage(id, from, subject, body, date));
-                    System.out.println("✓ Real Mail.tm message from: " + from);
+                finished++;
+                if (attempt.future.getNow(null) != null) {
+                    winner = attempt;
                 }
-            } else {
-                System.err.println("Mail.tm messages request failed: " + response.code());
-                if (response.body() != null) {
-                    System.err.println("Error response: " + response.body().string());
+            }
+        } finally {
+            // Проигравшие ящики удаляем, когда (и если) они будут созданы
+            for (CreationAttempt attempt : started) {
+                if (attempt != winner) {
+                    attempt.future.thenAccept(account -> discardAccount(attempt.provider, account));
                 }
             }
-
-        } catch (Exception e) {
-            System.err.println("Error getting Mail.tm messages: " + e.getMessage());
-            e.printStackTrace();
         }
 
-        return messages;
+        return winner != null ? winner.future.getNow(null) : null;
     }
 
-    private String getMailTMFullMessage(String messageId) {
-        if (mailTMToken == null) return "Content unavailable - no authentication";
+    private CreationAttempt startAttempt(MailProvider provider, BlockingQueue<CreationAttempt> completed) {
+        // Попытка выполняется с приоритетом вызывающего: пополнение пула остается фоновым
+        RequestPriority priority = RequestPriority.current();
+        CompletableFuture<EmailAccount> future = CompletableFuture.supplyAsync(() -> {
+            RequestPriority.setCurrent(priority);
+            return tryCreate(provider);
+        }, creationExecutor);
+        CreationAttempt attempt = new CreationAttempt(provider, future);
+        future.whenComplete((account, error) -> completed.add(attempt));
+        return attempt;
+    }
 
+    private EmailAccount tryCreate(MailProvider provider) {
         try {
-            Request request = new Request.Builder()
-                    .url("https://api.mail.tm/messages/" + messageId)
-                    .header("Authorization", "Bearer " + mailTMToken)
-                    .header("User-Agent", "TemporaryEmailClient/1.0")
-                    .build();
-
-            Response response = client.newCall(request).execute();
-            if (response.isSuccessful()) {
-                String responseBody = response.body().string();
-                JsonObject json = JsonParser.parseString(responseBody).getAsJsonObject();
-
-                // Согласно API, текст может быть в text или html полях
-                if (json.has("text") && !json.get("text").isJsonNull()) {
-                    return json.get("text").getAsString();
-                } else if (json.has("html") && !json.get("html").isJsonNull()) {
-                    return json.get("html").getAsString();
-                } else {
-                    return "No message content";
-                }
+            checkCircuit(provider);
+            EmailAccount account = provider.createAccount();
+            if (account != null) {
+                log.info("Created " + provider.getName() + " account: " + account.getEmail());
             }
+            return account;
         } catch (Exception e) {
-            System.err.println("Error getting Mail.tm message body: " + e.getMessage());
+            log.warn(provider.getName() + " error: " + e.getMessage());
+            return null;
         }
-        return "Message content unavailable";
     }
 
-    private List<EmailMessage> getGuerrillaMessages() {
-        List<EmailMessage> messages = new ArrayList<>();
-
-        if (guerrillaSID == null) {
-            System.err.println("No GuerrillaMail SID available");
-            return messages;
+    /**
+     * Удаляет ящик на стороне сервиса; false, если сервис недоступен или отказал
+     */
+    public boolean deleteAccount(EmailAccount account) {
+        MailProvider provider = providerFor(account.getSession());
+        if (provider == null) {
+            return false;
         }
-
         try {
-            // Согласно API docs: f=get_email_list для получения списка сообщений
-            Request request = new Request.Builder()
-                    .url("https://api.guerrillamail.com/ajax.php?f=get_email_list&offset=0&sid_token=" + guerrillaSID)
-                    .header("User-Agent", "TemporaryEmailClient/1.0")
-                    .build();
+            provider.deleteAccount(account.getSession());
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not delete " + account.getEmail() + ": " + e.getMessage());
+            return false;
+        }
+    }
 
-            Response response = client.newCall(request).execute();
+    private void discardAccount(MailProvider provider, EmailAccount account) {
+        if (account == null) {
+            return;
+        }
+        try {
+            provider.deleteAccount(account.getSession());
+            log.info("Discarded hedged " + provider.getName() + " account: " + account.getEmail());
+        } catch (Exception e) {
+            log.warn("Could not discard " + account.getEmail() + ": " + e.getMessage());
+        }
+    }
 
-            if (response.isSuccessful()) {
-                String jsonResponse = response.body().string();
-                JsonObject jsonObject = JsonParser.parseString(jsonResponse).getAsJsonObject();
+    private static final class CreationAttempt {
+        final MailProvider provider;
+        final CompletableFuture<EmailAccount> future;
 
-                // Согласно API, возвращает список сообщений в поле "list"
-                if (jsonObject.has("list")) {
-                    JsonArray emailList = jsonObject.getAsJsonArray("list");
+        CreationAttempt(MailProvider provider, CompletableFuture<EmailAccount> future) {
+            this.provider = provider;
+            this.future = future;
+        }
+    }
 
-                    System.out.println("GuerrillaMail API returned " + emailList.size() + " messages");
+    /**
+     * Получение списка сообщений - ТОЛЬКО реальные данные из API.
+     * Возвращает заголовки писем без тел, тело загружается через {@link #getMessageBody}.
+     * При ошибке сервиса возвращает null.
+     */
+    public List<EmailMessage> getMessages(EmailAccount account) {
+        try {
+            return syncMessages(account);
+        } catch (IOException e) {
+            log.warn("Error getting messages for " + account.getEmail() + ": " + e.getMessage());
+            return null;
+        }
+    }
 
-                    for (int i = 0; i < emailList.size(); i++) {
-                        JsonObject emailObj = emailList.get(i).getAsJsonObject();
+    /**
+     * Инкрементальная синхронизация: уже известные письма берутся из состояния
+     * синхронизации, удаленные - выбрасываются. Ошибки сервиса пробрасываются
+     * ({@link ProviderException} содержит HTTP-код), чтобы опрос мог на них реагировать.
+     */
+    public List<EmailMessage> syncMessages(EmailAccount account) throws IOException {
+        String email = account.getEmail();
+        log.debug(() -> "Getting messages for: " + email);
+
+        MailSession session = account.getSession();
+        MailProvider provider = providerFor(session);
+        if (provider == null) {
+            throw new IOException("No provider for " + email);
+        }
 
-                        String id = emailObj.get("mail_id").getAsString();
-                        String from = emailObj.get("mail_from").getAsString();
-                        String subject = emailObj.has("mail_subject") ?
-                                emailObj.get("mail_subject").getAsString() : "No Subject";
+        checkCircuit(provider);
+        List<EmailMessage> summaries;
+        try {
+            summaries = provider.listMessages(session);
+        } catch (ProviderException e) {
+            // Восстановленная из хранилища сессия могла истечь - пробуем обновить токен один раз
+            MailSession renewed = e.getStatusCode() == 401 ? provider.renewSession(account) : null;
+            if (renewed == null) {
+                throw e;
+            }
+            account.setSession(renewed);
+            session = renewed;
+            summaries = provider.listMessages(session);
+        }
 
-                        // Получаем полное сообщение
-                        String body = getGuerrillaFullMessage(id);
+        SyncState syncState = session.getSyncState();
+        List<EmailMessage> messages = new ArrayList<>(summaries.size());
+        List<String> currentIds = new ArrayList<>(summaries.size());
+        int added = 0;
 
-                        // Время в формате timestamp
-                        long timestamp = emailObj.get("mail_timestamp").getAsLong();
-                        Date date = new Date(timestamp * 1000);
+        for (EmailMessage summary : summaries) {
+            currentIds.add(summary.getId());
 
-                        messages.add(new EmailMessage(id, from, subject, body, date));
-                        System.out.println("✓ Real GuerrillaMail message from: " + from);
-                    }
-                }
-            } else {
-                System.err.println("GuerrillaMail messages request failed: " + response.code());
+            // Уже известное сообщение - используем его вместе с загруженным телом
+            EmailMessage known = syncState.get(summary.getId());
+            if (known != null) {
+                messages.add(known);
+                continue;
             }
 
-        } catch (Exception e) {
-            System.err.println("Error getting GuerrillaMail messages: " + e.getMessage());
-            e.printStackTrace();
+            syncState.put(summary);
+            messages.add(summary);
+            added++;
+            log.debug(() -> "New " + provider.getName() + " message from: " + summary.getFrom());
         }
 
+        // Удаленные на сервере сообщения выбрасываем из состояния
+        syncState.retainOnly(currentIds);
+        int newCount = added;
+        log.debug(() -> "Found " + messages.size() + " messages, new: " + newCount +
+                " | HTTP cache: " + getCacheStats());
         return messages;
     }
 
-    private String getGuerrillaFullMessage(String mailId) {
-        if (guerrillaSID == null) return "Content unavailable - no authentication";
+    /**
+     * Ленивая загрузка тела письма. Загруженный текст кэшируется в самом сообщении,
+     * при ошибке возвращается null и следующий вызов повторит запрос.
+     */
+    public String getMessageBody(EmailAccount account, EmailMessage message) {
+        if (message.isBodyLoaded()) {
+            return message.getBody();
+        }
+
+        MailSession session = account.getSession();
+        MailProvider provider = providerFor(session);
+        if (provider == null) {
+            return null;
+        }
 
         try {
-            // Согласно API docs: f=read_message для получения полного сообщения
-            Request request = new Request.Builder()
-                    .url("https://api.guerrillamail.com/ajax.php?f=fetch_email&email_id=" + mailId + "&sid_token=" + guerrillaSID)
-                    .header("User-Agent", "TemporaryEmailClient/1.0")
-                    .build();
-
-            Response response = client.newCall(request).execute();
-            if (response.isSuccessful()) {
-                String jsonResponse = response.body().string();
-                JsonObject jsonObject = JsonParser.parseString(jsonResponse).getAsJsonObject();
-
-                // Согласно API, текст сообщения может быть в разных полях
-                if (jsonObject.has("mail_body") && !jsonObject.get("mail_body").isJsonNull()) {
-                    return jsonObject.get("mail_body").getAsString();
-                } else if (jsonObject.has("mail_excerpt") && !jsonObject.get("mail_excerpt").isJsonNull()) {
-                    return jsonObject.get("mail_excerpt").getAsString();
-                } else {
-                    return "No message content";
-                }
+            checkCircuit(provider);
+            String body = provider.fetchBody(session, message.getId());
+            if (body != null) {
+                message.setBody(body);
             }
+            return body;
         } catch (Exception e) {
-            System.err.println("Error getting GuerrillaMail message body: " + e.getMessage());
+            log.warn("Error getting " + provider.getName() + " message body: " + e.getMessage());
+            return null;
         }
-        return "Message content unavailable";
     }
 
     /**
-     * Парсинг даты в формате ISO 8601
+     * Параллельно загружает тела всех еще не загруженных писем (первая синхронизация, экспорт).
+     * Возвращает количество успешно загруженных тел.
      */
-    private Date parseISODate(String dateStr) {
+    public int fetchBodies(EmailAccount account, List<EmailMessage> messages) {
+        MailSession session = account.getSession();
+        MailProvider provider = providerFor(session);
+        if (provider == null) {
+            return 0;
+        }
+
+        List<EmailMessage> pending = new ArrayList<>();
+        List<Request> requests = new ArrayList<>();
+        for (EmailMessage message : messages) {
+            if (!message.isBodyLoaded()) {
+                pending.add(message);
+                // Запросы уйдут из потоков диспетчера - приоритет вызывающего потока передаем тегом
+                requests.add(provider.buildBodyRequest(session, message.getId()).newBuilder()
+                        .tag(RequestPriority.class, RequestPriority.current())
+                        .build());
+            }
+        }
+
+        if (pending.isEmpty() || !health.allowRequest(provider.getName())) {
+            return 0;
+        }
+
         try {
-            // Простой парсинг для формата "2024-01-15T10:30:00.000Z"
-            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-            return format.parse(dateStr);
-        } catch (Exception e) {
-            System.err.println("Error parsing date: " + dateStr);
-            return new Date(); // Возвращаем текущую дату в случае ошибки
+            List<String> bodies = bodyFetcher.fetchAll(requests, provider::parseBody);
+            int loaded = 0;
+            for (int i = 0; i < pending.size(); i++) {
+                String body = bodies.get(i);
+                if (body != null) {
+                    pending.get(i).setBody(body);
+                    loaded++;
+                }
+            }
+            int fetched = loaded;
+            log.debug(() -> "Bodies fetched in parallel: " + fetched + " of " + pending.size() +
+                    " (concurrency " + bodyFetcher.getMaxConcurrency() + ")");
+            return loaded;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
         }
     }
 
     /**
-     * Генерация случайного имени пользователя
+     * Удаляет письмо на сервере и из состояния синхронизации аккаунта
      */
-    private String generateRandomUsername() {
-        String[] adjectives = {"quick", "fast", "happy", "clever", "brave", "calm", "smart", "cool"};
-        String[] nouns = {"fox", "wolf", "tiger", "eagle", "lion", "bear", "cat", "dog"};
-        String[] numbers = {"2024", "123", "456", "789", "999", "111", "222", "333"};
+    public boolean deleteMessage(EmailAccount account, EmailMessage message) {
+        MailSession session = account.getSession();
+        MailProvider provider = providerFor(session);
+        if (provider == null) {
+            return false;
+        }
 
-        String adjective = adjectives[random.nextInt(adjectives.length)];
-        String noun = nouns[random.nextInt(nouns.length)];
-        String number = numbers[random.nextInt(numbers.length)];
+        try {
+            if (provider.deleteMessage(session, message.getId())) {
+                session.getSyncState().remove(message.getId());
+                return true;
+            }
+        } catch (IOException e) {
+            log.warn("Error deleting " + provider.getName() + " message: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Открывает push-подписку на события ящика, если сервис ее поддерживает
+     */
+    public SseSubscription subscribe(EmailAccount account, SseSubscription.Listener listener) {
+        MailSession session = account.getSession();
+        MailProvider provider = providerFor(session);
+        return provider != null ? provider.subscribe(session, listener) : null;
+    }
 
-        return adjective + noun + number;
+    private MailProvider providerFor(MailSession session) {
+        return session != null ? providersByName.get(session.getProvider()) : null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,101 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ведро токенов одного хоста: пополняется со скоростью квоты сервиса до burst токенов.
+ * Пока токен ждет хотя бы один интерактивный запрос, фоновые токен не получают.
+ * После 429 или Retry-After ведро приостанавливается и затем наполняется с нуля.
+ */
+public class TokenBucket {
+    // Фоновый запрос, пропускающий интерактивные, перепроверяет очередь не реже этого
+    private static final long YIELD_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final double tokensPerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long refilledAt;
+    private long pausedUntil;
+    private int interactiveWaiting;
+
+    public TokenBucket(double requestsPerSecond, double burst) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("requestsPerSecond must be > 0: " + requestsPerSecond);
+        }
+        this.tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+        this.pausedUntil = refilledAt;
+    }
+
+    /**
+     * Берет токен, ожидая не дольше maxWaitNanos. Возвращает false, если за это время
+     * токен не получить (например, сервис попросил паузу длиннее).
+     */
+    public synchronized boolean acquire(RequestPriority priority, long maxWaitNanos) throws InterruptedException {
+        boolean interactive = priority == RequestPriority.INTERACTIVE;
+        long deadline = System.nanoTime() + maxWaitNanos;
+        if (interactive) {
+            interactiveWaiting++;
+        }
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                refill(now);
+
+                long waitNanos;
+                if (pausedUntil - now > 0) {
+                    waitNanos = pausedUntil - now;
+                } else if (!interactive && interactiveWaiting > 0) {
+                    waitNanos = Math.max(YIELD_NANOS, nanosUntilToken());
+                } else if (tokens >= 1) {
+                    tokens -= 1;
+                    return true;
+                } else {
+                    waitNanos = nanosUntilToken();
+                }
+
+                if (waitNanos > deadline - now) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+            }
+        } finally {
+            if (interactive) {
+                interactiveWaiting--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Останавливает выдачу токенов на pauseNanos; накопленный запас сгорает
+     */
+    public synchronized void pause(long pauseNanos) {
+        long until = System.nanoTime() + pauseNanos;
+        if (until - pausedUntil > 0) {
+            pausedUntil = until;
+        }
+        tokens = 0;
+        refilledAt = pausedUntil;
+    }
+
+    /**
+     * Сколько осталось паузы, 0 - если ведро не приостановлено
+     */
+    public synchronized long getPauseRemainingNanos() {
+        return Math.max(0, pausedUntil - System.nanoTime());
+    }
+
+    private void refill(long now) {
+        long elapsed = now - refilledAt;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            refilledAt = now;
+        }
+    }
+
+    private long nanosUntilToken() {
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+}
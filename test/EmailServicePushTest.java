@@ -0,0 +1,192 @@
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Push-доставка EmailService на локальном потоке событий: пока поток открыт, письма
+ * приходят по событиям, после обрыва ящик опрашивается сразу. Плановый опрос в тестах
+ * отложен на 10 минут (настройки surefire), поэтому письмо может прийти только по событию
+ * или опросу после обрыва.
+ */
+class EmailServicePushTest {
+    // Заметно меньше первой попытки переподключения (5 с)
+    private static final long DELIVERY_MILLIS = 2000;
+
+    private SseTestServer server;
+    private PushProvider provider;
+    private EmailService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new SseTestServer();
+        provider = new PushProvider(server.url());
+        service = new EmailService(new TempEmailAPI(Collections.singletonList(provider), 1), true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stopService();
+        server.close();
+    }
+
+    @Test
+    void eventTriggersSync() throws Exception {
+        EmailAccount account = connect();
+
+        provider.deliver("welcome");
+        server.send("{\"@type\":\"Message\"}");
+
+        awaitTrue(() -> hasMessage(account, "welcome"), "event did not trigger a sync");
+        // После подключения - синхронизация при открытии и одна по событию, опросов не было
+        assertEquals(2, provider.listCallsSinceOpen.get());
+    }
+
+    @Test
+    void droppedStreamFallsBackToPolling() throws Exception {
+        EmailAccount account = connect();
+
+        // Переподключение будет отклонено - письмо может прийти только опросом
+        provider.deliver("after-drop");
+        server.reject(503);
+        server.drop();
+
+        awaitTrue(() -> hasMessage(account, "after-drop"), "no poll after the stream dropped");
+    }
+
+    private EmailAccount connect() throws InterruptedException {
+        EmailAccount account = service.createNewEmail();
+        assertNotNull(account);
+        // Поток открывается после первой синхронизации ящика, чтобы она не пересеклась с синхронизацией при открытии
+        awaitTrue(() -> provider.listCalls.get() > 0, "no initial sync");
+        provider.openStream();
+        assertTrue(provider.opened.await(DELIVERY_MILLIS, TimeUnit.MILLISECONDS), "push stream not opened");
+        // Ждем синхронизацию, которую запускает открытие потока: дальше письма приходят только событиями
+        awaitTrue(() -> provider.listCallsSinceOpen.get() == 1, "no sync after the stream opened");
+        return account;
+    }
+
+    private static boolean hasMessage(EmailAccount account, String id) {
+        List<EmailMessage> messages = account.getMessages();
+        if (messages != null) {
+            for (EmailMessage message : messages) {
+                if (message.getId().equals(id)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DELIVERY_MILLIS);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, message);
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Сервис без сети, кроме потока событий на локальном сервере
+     */
+    private static final class PushProvider implements MailProvider {
+        private final String eventsUrl;
+        private final List<EmailMessage> inbox = new CopyOnWriteArrayList<>();
+        private volatile SseSubscription subscription;
+        final CountDownLatch opened = new CountDownLatch(1);
+        final AtomicInteger listCalls = new AtomicInteger();
+        // Завершенные запросы списка: все и начатые после открытия потока
+        final AtomicInteger listCallsSinceOpen = new AtomicInteger();
+
+        PushProvider(String eventsUrl) {
+            this.eventsUrl = eventsUrl;
+        }
+
+        /**
+         * Подключает поток, запрошенный сервисом: подписка создается без подключения
+         */
+        void openStream() {
+            subscription.start();
+        }
+
+        void deliver(String id) {
+            inbox.add(0, new EmailMessage(id, "noreply@example.com", "Subject " + id, null, new Date()));
+        }
+
+        @Override
+        public String getName() {
+            return "push-test";
+        }
+
+        @Override
+        public EmailAccount createAccount() {
+            String address = "user" + System.nanoTime() + "@example.com";
+            return new EmailAccount(address, "password", new MailSession(getName(), address, "token", address));
+        }
+
+        @Override
+        public List<EmailMessage> listMessages(MailSession session) {
+            boolean afterOpen = opened.getCount() == 0;
+            List<EmailMessage> messages = new ArrayList<>(inbox);
+            listCalls.incrementAndGet();
+            if (afterOpen) {
+                listCallsSinceOpen.incrementAndGet();
+            }
+            return messages;
+        }
+
+        @Override
+        public Request buildBodyRequest(MailSession session, String messageId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String parseBody(Response response) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean deleteMessage(MailSession session, String messageId) {
+            return inbox.removeIf(message -> message.getId().equals(messageId));
+        }
+
+        @Override
+        public SseSubscription subscribe(MailSession session, SseSubscription.Listener listener) {
+            Request request = new Request.Builder().url(eventsUrl).build();
+            subscription = new SseSubscription(TempEmailAPI.httpClient(), request, new SseSubscription.Listener() {
+                @Override
+                public void onOpen() {
+                    // До вызова сервиса: синхронизация, которую он запустит, уже считается
+                    opened.countDown();
+                    listener.onOpen();
+                }
+
+                @Override
+                public void onEvent(String data) {
+                    listener.onEvent(data);
+                }
+
+                @Override
+                public void onClosed(Throwable error) {
+                    listener.onClosed(error);
+                }
+            });
+            return subscription;
+        }
+    }
+}
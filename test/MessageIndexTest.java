@@ -0,0 +1,72 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MessageIndexTest {
+    private final MessageIndex index = new MessageIndex();
+
+    @Test
+    void searchIsScopedToAccount() {
+        index.add("first@example.com", message("1", "Код подтверждения", null));
+        index.add("second@example.com", message("1", "Welcome", null));
+        index.add("second@example.com", message("2", "Код входа", null));
+
+        assertEquals(ids("1"), index.search("first@example.com", "код"));
+        assertEquals(ids("2"), index.search("second@example.com", "код"));
+        assertEquals(ids("1"), index.search("second@example.com", "welcome"));
+        assertEquals(ids(), index.search("first@example.com", "welcome"));
+        assertEquals(ids(), index.search("unknown@example.com", "код"));
+    }
+
+    @Test
+    void allWordsMustMatchAndLastIsPrefix() {
+        index.add("a@example.com", message("1", "Your verification code", null));
+        index.add("a@example.com", message("2", "Your invoice", null));
+
+        assertEquals(ids("1", "2"), index.search("a@example.com", "your"));
+        assertEquals(ids("1"), index.search("a@example.com", "your veri"));
+        // Завершенное слово ищется целиком, а не по префиксу
+        assertEquals(ids(), index.search("a@example.com", "your veri "));
+        assertNull(index.search("a@example.com", "  "));
+    }
+
+    @Test
+    void bodyIsIndexedOnceLoaded() {
+        index.add("a@example.com", message("1", "Hello", null));
+        assertEquals(ids(), index.search("a@example.com", "4821"));
+
+        index.add("a@example.com", message("1", "Hello", "<p>Your code is 4821</p>"));
+        assertEquals(ids("1"), index.search("a@example.com", "4821"));
+        // Разметка не индексируется
+        assertEquals(ids(), index.search("a@example.com", "p"));
+    }
+
+    @Test
+    void removedMessagesAndAccountsLeaveIndex() {
+        index.addAll("a@example.com", Arrays.asList(message("1", "One", null), message("2", "Two", null)));
+        index.add("b@example.com", message("1", "One", null));
+
+        index.retainOnly("a@example.com", Collections.singletonList(message("2", "Two", null)));
+        assertEquals(ids(), index.search("a@example.com", "one"));
+        assertEquals(ids("1"), index.search("b@example.com", "one"));
+
+        index.removeAccount("b@example.com");
+        assertEquals(1, index.size());
+        assertEquals(ids(), index.search("b@example.com", "one"));
+    }
+
+    private static EmailMessage message(String id, String subject, String body) {
+        return new EmailMessage(id, "sender@example.com", subject, body, new Date(0));
+    }
+
+    private static Set<String> ids(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+}
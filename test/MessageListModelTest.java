@@ -0,0 +1,135 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Обновление MessageListModel разницей: проверяются итоговый список и события,
+ * которые получит JList (по ним он сохраняет выделение и перерисовывает строки).
+ */
+class MessageListModelTest {
+    private MessageListModel model;
+    private final List<String> events = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        model = new MessageListModel();
+        model.setMessages(messages("c", "d", "e"));
+        model.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                events.add("added " + e.getIndex0() + ".." + e.getIndex1());
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+                events.add("removed " + e.getIndex0() + ".." + e.getIndex1());
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+                events.add("changed " + e.getIndex0() + ".." + e.getIndex1());
+            }
+        });
+    }
+
+    @Test
+    void newMessagesOnTopAreOneInsertion() {
+        List<EmailMessage> target = new ArrayList<>(messages("a", "b"));
+        target.addAll(items());
+
+        model.setMessages(target);
+
+        assertIds("a", "b", "c", "d", "e");
+        assertEquals(Collections.singletonList("added 0..1"), events);
+    }
+
+    @Test
+    void removedBlocksAreReportedSeparately() {
+        model.setMessages(messages("c", "d", "e", "f", "g"));
+        events.clear();
+
+        model.setMessages(Arrays.asList(item(0), item(2), item(4)));
+
+        assertIds("c", "e", "g");
+        // Блоки удаляются с конца, поэтому индексы первого блока не сдвигаются
+        assertEquals(Arrays.asList("removed 3..3", "removed 1..1"), events);
+    }
+
+    @Test
+    void replacedMessageIsReportedAsChange() {
+        List<EmailMessage> target = items();
+        EmailMessage loaded = new EmailMessage("d", "from@example.com", "Subject d", "body", new Date(0));
+        target.set(1, loaded);
+
+        model.setMessages(target);
+
+        assertIds("c", "d", "e");
+        assertSame(loaded, model.getElementAt(1));
+        assertEquals(Collections.singletonList("changed 1..1"), events);
+    }
+
+    @Test
+    void sameMessagesFireNothing() {
+        model.setMessages(items());
+
+        assertIds("c", "d", "e");
+        assertEquals(Collections.emptyList(), events);
+    }
+
+    @Test
+    void mixedUpdateReachesTarget() {
+        model.setMessages(Arrays.asList(message("a"), item(2), message("x"), item(0)));
+
+        assertIds("a", "e", "x", "c");
+    }
+
+    @Test
+    void emptyListClearsModel() {
+        model.setMessages(null);
+
+        assertEquals(0, model.getSize());
+        assertEquals(Collections.singletonList("removed 0..2"), events);
+    }
+
+    private List<EmailMessage> items() {
+        List<EmailMessage> result = new ArrayList<>();
+        for (int i = 0; i < model.getSize(); i++) {
+            result.add(model.getElementAt(i));
+        }
+        return result;
+    }
+
+    private EmailMessage item(int index) {
+        return model.getElementAt(index);
+    }
+
+    private void assertIds(String... ids) {
+        List<String> actual = new ArrayList<>();
+        for (EmailMessage message : items()) {
+            actual.add(message.getId());
+        }
+        assertEquals(Arrays.asList(ids), actual);
+    }
+
+    private static List<EmailMessage> messages(String... ids) {
+        List<EmailMessage> result = new ArrayList<>();
+        for (String id : ids) {
+            result.add(message(id));
+        }
+        return result;
+    }
+
+    private static EmailMessage message(String id) {
+        return new EmailMessage(id, "from@example.com", "Subject " + id, null, new Date(0));
+    }
+}
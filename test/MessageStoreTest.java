@@ -0,0 +1,147 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Журнал MessageStore: восстановление после перезапуска, пропуск испорченных
+ * записей и обрезка недописанного хвоста.
+ */
+class MessageStoreTest {
+    // Формат записи журнала: длина (4 байта), тип (1 байт), JSON
+    private static final byte TYPE_ACCOUNT = 1;
+    private static final byte TYPE_MESSAGE = 2;
+
+    @TempDir
+    File dir;
+
+    @Test
+    void accountsAndMessagesSurviveReopen() throws IOException {
+        File file = new File(dir, "messages.log");
+        try (MessageStore store = MessageStore.open(file)) {
+            EmailAccount first = account("first@example.com");
+            store.saveAccount(first);
+            store.saveMessages(first, Arrays.asList(message("1"), message("2"), message("3")));
+            store.retainMessages(first, Collections.singletonList(message("2")));
+
+            EmailAccount second = account("second@example.com");
+            store.saveAccount(second);
+            store.saveMessages(second, Collections.singletonList(message("1")));
+            store.removeAccount(second);
+        }
+
+        try (MessageStore store = MessageStore.open(file)) {
+            List<EmailAccount> accounts = store.loadAccounts();
+            assertEquals(1, accounts.size());
+            assertEquals("first@example.com", accounts.get(0).getEmail());
+            assertEquals("token", accounts.get(0).getSession().getToken());
+            assertEquals(Collections.singletonList("2"), ids(accounts.get(0)));
+            assertNull(store.loadAccount("second@example.com"));
+        }
+    }
+
+    @Test
+    void damagedRecordIsSkipped() throws IOException {
+        File file = new File(dir, "messages.log");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(record(TYPE_ACCOUNT, accountJson("first@example.com")));
+            out.write(record(TYPE_MESSAGE, "{\"account\":"));
+            out.write(record(TYPE_MESSAGE, "{}"));
+            out.write(record(TYPE_ACCOUNT, accountJson("second@example.com")));
+            out.write(record(TYPE_MESSAGE, "{\"account\":\"second@example.com\",\"id\":\"7\",\"date\":0}"));
+        }
+
+        try (MessageStore store = MessageStore.open(file)) {
+            assertEquals(Arrays.asList("first@example.com", "second@example.com"), emails(store.loadAccounts()));
+            assertEquals(Collections.singletonList("7"), ids(store.loadAccount("second@example.com")));
+        }
+        // Испорченные записи убраны сжатием и при следующем открытии не встречаются
+        try (MessageStore store = MessageStore.open(file)) {
+            assertEquals(2, store.loadAccounts().size());
+        }
+    }
+
+    @Test
+    void incompleteTailIsTruncated() throws IOException {
+        File file = new File(dir, "messages.log");
+        byte[] account = record(TYPE_ACCOUNT, accountJson("first@example.com"));
+        byte[] torn = Arrays.copyOf(record(TYPE_ACCOUNT, accountJson("second@example.com")), 12);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(account);
+            out.write(torn);
+        }
+
+        try (MessageStore store = MessageStore.open(file)) {
+            assertEquals(Collections.singletonList("first@example.com"), emails(store.loadAccounts()));
+            assertEquals(account.length, file.length());
+            // Дозапись идет сразу за последней целой записью
+            store.saveAccount(account("third@example.com"));
+        }
+
+        try (MessageStore store = MessageStore.open(file)) {
+            assertEquals(Arrays.asList("first@example.com", "third@example.com"), emails(store.loadAccounts()));
+            assertNotNull(store.loadAccount("third@example.com"));
+        }
+    }
+
+    @Test
+    void garbageLengthDoesNotLoseEarlierRecords() throws IOException {
+        File file = new File(dir, "messages.log");
+        byte[] account = record(TYPE_ACCOUNT, accountJson("first@example.com"));
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(account);
+            out.write(ByteBuffer.allocate(5).putInt(Integer.MAX_VALUE).put(TYPE_ACCOUNT).array());
+        }
+
+        try (MessageStore store = MessageStore.open(file)) {
+            assertEquals(Collections.singletonList("first@example.com"), emails(store.loadAccounts()));
+        }
+        assertEquals(account.length, file.length());
+    }
+
+    private static EmailAccount account(String email) {
+        return new EmailAccount(email, "password", new MailSession("test", email, "token", email));
+    }
+
+    private static EmailMessage message(String id) {
+        return new EmailMessage(id, "from@example.com", "Subject " + id, null, new Date(0));
+    }
+
+    private static String accountJson(String email) {
+        return "{\"email\":\"" + email + "\",\"password\":\"password\",\"provider\":\"test\",\"token\":\"token\"}";
+    }
+
+    private static byte[] record(byte type, String json) {
+        byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(5 + payload.length).putInt(payload.length).put(type).put(payload).array();
+    }
+
+    private static List<String> emails(List<EmailAccount> accounts) {
+        List<String> result = new ArrayList<>();
+        for (EmailAccount account : accounts) {
+            result.add(account.getEmail());
+        }
+        return result;
+    }
+
+    private static List<String> ids(EmailAccount account) {
+        List<String> result = new ArrayList<>();
+        for (EmailMessage message : account.getMessages()) {
+            result.add(message.getId());
+        }
+        return result;
+    }
+}
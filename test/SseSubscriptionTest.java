@@ -0,0 +1,115 @@
+import okhttp3.Request;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SseSubscriptionTest {
+    private static final long WAIT_SECONDS = 5;
+
+    private SseTestServer server;
+    private RecordingListener listener;
+    private SseSubscription subscription;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new SseTestServer();
+        listener = new RecordingListener();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (subscription != null) {
+            subscription.close();
+        }
+        server.close();
+    }
+
+    @Test
+    void opensStreamAndDeliversEvents() throws Exception {
+        subscribe();
+        assertEquals("open", listener.next());
+        assertTrue(subscription.isConnected());
+
+        server.send("{\"id\":\"1\"}");
+        assertEquals("event {\"id\":\"1\"}", listener.next());
+
+        // Комментарии пропускаются, строки data: одного события склеиваются через \n
+        server.comment("keep-alive");
+        server.send("first\nsecond");
+        assertEquals("event first\nsecond", listener.next());
+    }
+
+    @Test
+    void reportsServerDrop() throws Exception {
+        subscribe();
+        assertEquals("open", listener.next());
+
+        server.drop();
+        assertEquals("closed", listener.next());
+        assertNull(listener.lastError);
+        assertFalse(subscription.isConnected());
+    }
+
+    @Test
+    void reportsRejectedStreamWithoutOpening() throws Exception {
+        server.reject(503);
+        subscribe();
+
+        assertEquals("closed", listener.next());
+        assertInstanceOf(ProviderException.class, listener.lastError);
+        assertEquals(503, ((ProviderException) listener.lastError).getStatusCode());
+    }
+
+    @Test
+    void closeByClientIsNotReportedAsDrop() throws Exception {
+        subscribe();
+        assertEquals("open", listener.next());
+
+        subscription.close();
+        assertNull(listener.events.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    private void subscribe() {
+        Request request = new Request.Builder().url(server.url()).build();
+        subscription = new SseSubscription(TempEmailAPI.httpClient(), request, listener).start();
+    }
+
+    private static final class RecordingListener implements SseSubscription.Listener {
+        final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        volatile Throwable lastError;
+
+        @Override
+        public void onOpen() {
+            events.add("open");
+        }
+
+        @Override
+        public void onEvent(String data) {
+            events.add("event " + data);
+        }
+
+        @Override
+        public void onClosed(Throwable error) {
+            lastError = error;
+            events.add("closed");
+        }
+
+        String next() throws InterruptedException {
+            String event = events.poll(WAIT_SECONDS, TimeUnit.SECONDS);
+            if (event == null) {
+                throw new AssertionError("no SSE callback within " + WAIT_SECONDS + " s");
+            }
+            return event;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Локальный поток server-sent events на JDK HttpServer для тестов push-доставки.
+ * Подключения остаются открытыми, пока тест не вызовет {@link #drop()}; события
+ * рассылаются всем открытым подключениям.
+ */
+class SseTestServer implements Closeable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<HttpExchange> streams = new CopyOnWriteArrayList<>();
+    private volatile int status = 200;
+
+    SseTestServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/events", this::handle);
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/events";
+    }
+
+    /**
+     * Новые подключения получат этот статус вместо потока (например, 503 - hub недоступен)
+     */
+    void reject(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Отправляет событие всем открытым потокам; многострочные данные - несколькими строками data:
+     */
+    void send(String data) throws IOException {
+        StringBuilder event = new StringBuilder();
+        for (String line : data.split("\n", -1)) {
+            event.append("data: ").append(line).append('\n');
+        }
+        event.append('\n');
+        write(event.toString());
+    }
+
+    /**
+     * Отправляет комментарий (keep-alive), который клиент должен пропустить
+     */
+    void comment(String text) throws IOException {
+        write(": " + text + "\n\n");
+    }
+
+    /**
+     * Закрывает все открытые потоки со стороны сервера
+     */
+    void drop() {
+        for (HttpExchange exchange : streams) {
+            streams.remove(exchange);
+            synchronized (exchange) {
+                exchange.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        drop();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int code = status;
+        if (code != 200) {
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+            return;
+        }
+        // Поток регистрируется до отправки заголовков: клиент может получить событие сразу после onOpen,
+        // а write() ждет на том же мониторе, пока заголовки не уйдут. Обработчик возвращается,
+        // подключение остается открытым до drop()
+        synchronized (exchange) {
+            streams.add(exchange);
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().flush();
+        }
+    }
+
+    private void write(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (HttpExchange exchange : streams) {
+            synchronized (exchange) {
+                OutputStream out = exchange.getResponseBody();
+                out.write(bytes);
+                out.flush();
+            }
+        }
+    }
+}